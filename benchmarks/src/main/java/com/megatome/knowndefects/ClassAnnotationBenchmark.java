@@ -0,0 +1,65 @@
+/*******************************************************************************
+ * Copyright (c) 2011-2013 Megatome Technologies
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.megatome.knowndefects;
+
+import com.megatome.knowndefects.info.AnnotationInformation;
+import com.megatome.knowndefects.info.AnnotationInformationFactory;
+import com.megatome.knowndefects.scan.ClassAnnotation;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static com.megatome.knowndefects.Constants.KNOWN_DEFECT_ANNOTATION_CLASS;
+
+/**
+ * Measures building a single class entry with many annotated methods and reading it back, which shows how
+ * adding annotations scales with the number already present.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ClassAnnotationBenchmark {
+    @Param({"100", "1000", "10000"})
+    public int annotationCount;
+
+    private AnnotationInformation[] annotations;
+
+    @Setup(Level.Trial)
+    public void createAnnotations() {
+        annotations = new AnnotationInformation[annotationCount];
+        // Added in reverse order so every read has to sort
+        for (int i = 0; i < annotationCount; i++) {
+            final AnnotationInformation info = AnnotationInformationFactory.createInformation(KNOWN_DEFECT_ANNOTATION_CLASS);
+            info.setClassName("bench.Synthetic");
+            info.setMethodName(String.format("test%06d", annotationCount - i));
+            annotations[i] = info;
+        }
+    }
+
+    @Benchmark
+    public List<AnnotationInformation> buildAndRead() {
+        final ClassAnnotation classAnnotation = new ClassAnnotation("bench", "Synthetic");
+        for (final AnnotationInformation info : annotations) {
+            classAnnotation.addAnnotation(info);
+        }
+        return classAnnotation.getAnnotations();
+    }
+}
@@ -0,0 +1,63 @@
+/*******************************************************************************
+ * Copyright (c) 2011-2013 Megatome Technologies
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.megatome.knowndefects;
+
+import com.megatome.knowndefects.scan.AnnotationScanResults;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures merging the results of two source roots. Merging mutates both sides, so fresh inputs are built for
+ * every invocation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class MergeBenchmark {
+    @Param({"1000", "10000"})
+    public int classCount;
+
+    @Param({"0.05", "0.5"})
+    public double annotationDensity;
+
+    @Param({"10", "200"})
+    public int packageFanOut;
+
+    /** Fraction of the second result set that shares classes with the first. */
+    @Param({"0", "0.5"})
+    public double overlap;
+
+    private AnnotationScanResults target;
+    private AnnotationScanResults source;
+
+    @Setup(Level.Invocation)
+    public void buildResults() {
+        final SyntheticClasses classes = new SyntheticClasses(classCount, annotationDensity, packageFanOut);
+        target = classes.buildResults(0);
+        source = classes.buildResults((int) (classCount * (1 - overlap)));
+    }
+
+    @Benchmark
+    public AnnotationScanResults merge() {
+        target.merge(source);
+        return target;
+    }
+}
@@ -0,0 +1,94 @@
+/*******************************************************************************
+ * Copyright (c) 2011-2013 Megatome Technologies
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.megatome.knowndefects;
+
+import com.megatome.knowndefects.scan.AnnotationScanResults;
+import org.apache.maven.doxia.sink.XhtmlBaseSink;
+import org.apache.maven.reporting.AbstractMavenReport;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.lang.reflect.Field;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures rendering already scanned results in each report format. The HTML report is rendered through an
+ * XHTML sink into memory, the file based formats are written below a temporary directory.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ReportBenchmark {
+    @Param({"1000", "10000"})
+    public int classCount;
+
+    @Param({"0.05", "0.5"})
+    public double annotationDensity;
+
+    @Param({"10", "200"})
+    public int packageFanOut;
+
+    @Param({"html", "xml", "xml-aggregate", "json"})
+    public String format;
+
+    private AnnotationScanResults results;
+    private KnownDefectsReportMojo mojo;
+    private File outputDir;
+
+    @Setup(Level.Trial)
+    public void createMojo() throws Exception {
+        results = new SyntheticClasses(classCount, annotationDensity, packageFanOut).buildResults(0).freeze();
+        outputDir = File.createTempFile("kd-report", "");
+        if (!outputDir.delete() || !outputDir.mkdirs()) {
+            throw new IOException("Could not create " + outputDir);
+        }
+        mojo = new KnownDefectsReportMojo();
+        final boolean aggregate = format.endsWith("-aggregate");
+        setField(AbstractKnownDefectsReportMojo.class, "format", aggregate ? KnownDefectsReportMojo.XML : format);
+        setField(AbstractKnownDefectsReportMojo.class, "aggregateReport", aggregate);
+        setField(AbstractKnownDefectsReportMojo.class, "outputDirectory", outputDir);
+    }
+
+    @Setup(Level.Invocation)
+    public void createSink() throws Exception {
+        if (KnownDefectsReportMojo.HTML.equals(format)) {
+            setField(AbstractMavenReport.class, "sink", new XhtmlBaseSink(new StringWriter()));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteReports() {
+        SyntheticClasses.delete(outputDir);
+    }
+
+    @Benchmark
+    public void render() throws Exception {
+        mojo.renderReport(Locale.ENGLISH, results);
+    }
+
+    private void setField(final Class<?> owner, final String name, final Object value) throws Exception {
+        final Field field = owner.getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(mojo, value);
+    }
+}
@@ -0,0 +1,85 @@
+/*******************************************************************************
+ * Copyright (c) 2011-2013 Megatome Technologies
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.megatome.knowndefects;
+
+import com.megatome.knowndefects.scan.AnnotationScanResults;
+import com.megatome.knowndefects.scan.AnnotationScanner;
+import com.megatome.knowndefects.scan.ClassParserType;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures a full scan of a synthetic class directory, on the build thread and with the parallel pipeline.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ScanBenchmark {
+    @Param({"1000", "10000"})
+    public int classCount;
+
+    @Param({"0.05", "0.5"})
+    public double annotationDensity;
+
+    @Param({"10", "200"})
+    public int packageFanOut;
+
+    @Param({"JAVASSIST", "SKIP_CODE"})
+    public String parser;
+
+    private File classDir;
+    private AnnotationScanner sequential;
+    private AnnotationScanner parallel;
+
+    @Setup(Level.Trial)
+    public void writeClasses() throws IOException {
+        classDir = File.createTempFile("kd-scan", "");
+        if (!classDir.delete() || !classDir.mkdirs()) {
+            throw new IOException("Could not create " + classDir);
+        }
+        new SyntheticClasses(classCount, annotationDensity, packageFanOut).writeTo(classDir);
+        final ClassParserType parserType = ClassParserType.valueOf(parser);
+        sequential = AnnotationScanner.builder().threads(1).parser(parserType).build();
+        parallel = AnnotationScanner.builder().threads(0).parser(parserType).build();
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteClasses() {
+        SyntheticClasses.delete(classDir);
+    }
+
+    @Benchmark
+    public AnnotationScanResults scanSequential() throws Exception {
+        return sequential.scan(classDir.getAbsolutePath());
+    }
+
+    @Benchmark
+    public AnnotationScanResults scanParallel() throws Exception {
+        return parallel.scan(classDir.getAbsolutePath());
+    }
+
+    @Benchmark
+    public AnnotationScanResults findAnnotationsInPath() throws Exception {
+        return AnnotationScanner.findAnnotationsInPath(classDir.getAbsolutePath());
+    }
+}
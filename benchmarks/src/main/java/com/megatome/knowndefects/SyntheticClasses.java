@@ -0,0 +1,198 @@
+/*******************************************************************************
+ * Copyright (c) 2011-2013 Megatome Technologies
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.megatome.knowndefects;
+
+import com.megatome.knowndefects.info.AnnotationInformation;
+import com.megatome.knowndefects.info.AnnotationInformationFactory;
+import com.megatome.knowndefects.scan.AnnotationScanResults;
+import javassist.bytecode.AnnotationsAttribute;
+import javassist.bytecode.AttributeInfo;
+import javassist.bytecode.Bytecode;
+import javassist.bytecode.ClassFile;
+import javassist.bytecode.CodeAttribute;
+import javassist.bytecode.ConstPool;
+import javassist.bytecode.DuplicateMemberException;
+import javassist.bytecode.MethodInfo;
+import javassist.bytecode.Opcode;
+import javassist.bytecode.annotation.Annotation;
+import javassist.bytecode.annotation.StringMemberValue;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static com.megatome.knowndefects.Constants.KNOWN_ACCEPTED_DEFECT_ANNOTATION_CLASS;
+import static com.megatome.knowndefects.Constants.KNOWN_DEFECT_ANNOTATION_CLASS;
+
+/**
+ * Generates synthetic class trees and scan results for the benchmarks. The shape is controlled by the number of
+ * classes, the fraction of methods carrying an annotation and the number of packages the classes are spread over.
+ * Generation is deterministic, so every fork sees the same tree.
+ * <p>Like a JUnit test class, every method carries a <code>@Test</code> annotation and has a body with a line
+ * number table, whether or not it also carries a KD annotation. KD annotations carry the members their type
+ * declares, as real tests do.</p>
+ */
+final class SyntheticClasses {
+    static final int METHODS_PER_CLASS = 8;
+    private static final String TEST_ANNOTATION = "org.junit.Test";
+    private static final int CODE_LENGTH = 64;
+
+    private final int classCount;
+    private final double annotationDensity;
+    private final int packageFanOut;
+
+    SyntheticClasses(final int classCount, final double annotationDensity, final int packageFanOut) {
+        this.classCount = classCount;
+        this.annotationDensity = annotationDensity;
+        this.packageFanOut = Math.max(1, packageFanOut);
+    }
+
+    /**
+     * Write the class tree below a directory.
+     * @param baseDir Directory to write to
+     * @throws IOException If a class cannot be written
+     */
+    void writeTo(final File baseDir) throws IOException {
+        for (int i = 0; i < classCount; i++) {
+            final ClassFile cf = new ClassFile(false, className(i), null);
+            final ConstPool cp = cf.getConstPool();
+            for (int m = 0; m < METHODS_PER_CLASS; m++) {
+                final MethodInfo method = new MethodInfo(cp, methodName(m), "()V");
+                method.setCodeAttribute(createCode(cp, m + 1));
+                final AnnotationsAttribute attribute = new AnnotationsAttribute(cp, AnnotationsAttribute.visibleTag);
+                attribute.addAnnotation(new Annotation(TEST_ANNOTATION, cp));
+                final String annotationClass = annotationFor(i, m);
+                if (null != annotationClass) {
+                    final Annotation annotation = new Annotation(annotationClass, cp);
+                    for (final Map.Entry<String, String> member : membersFor(annotationClass, i, m).entrySet()) {
+                        annotation.addMemberValue(member.getKey(), new StringMemberValue(member.getValue(), cp));
+                    }
+                    attribute.addAnnotation(annotation);
+                }
+                method.addAttribute(attribute);
+                try {
+                    cf.addMethod(method);
+                } catch (DuplicateMemberException e) {
+                    throw new IOException(e.getMessage());
+                }
+            }
+            write(baseDir, cf);
+        }
+    }
+
+    /**
+     * Build the scan results the class tree would produce, without touching the file system.
+     * @param offset Offset added to class indexes, so separate result sets can overlap or not
+     * @return Scan results
+     */
+    AnnotationScanResults buildResults(final int offset) {
+        final AnnotationScanResults results = new AnnotationScanResults();
+        for (int i = 0; i < classCount; i++) {
+            final String className = className(i + offset);
+            for (int m = 0; m < METHODS_PER_CLASS; m++) {
+                final String annotationClass = annotationFor(i + offset, m);
+                if (null == annotationClass) {
+                    continue;
+                }
+                final AnnotationInformation info = AnnotationInformationFactory.createInformation(annotationClass);
+                info.setClassName(className);
+                info.setMethodName(methodName(m));
+                info.setLineNumber(m + 1);
+                for (final Map.Entry<String, String> member : membersFor(annotationClass, i, m).entrySet()) {
+                    info.setMethodValue(member.getKey(), member.getValue());
+                }
+                results.addResult(className, info);
+            }
+        }
+        return results;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static CodeAttribute createCode(final ConstPool cp, final int line) {
+        final Bytecode code = new Bytecode(cp, 0, 1);
+        for (int i = 1; i < CODE_LENGTH; i++) {
+            code.add(Opcode.NOP);
+        }
+        code.add(Opcode.RETURN);
+        final CodeAttribute attribute = code.toCodeAttribute();
+        final byte[] table = {0, 1, 0, 0, (byte) (line >> 8), (byte) line};
+        attribute.getAttributes().add(new AttributeInfo(cp, "LineNumberTable", table));
+        return attribute;
+    }
+
+    String className(final int index) {
+        return "bench.pkg" + (index % packageFanOut) + ".Synthetic" + index;
+    }
+
+    private static String methodName(final int index) {
+        return "test" + index;
+    }
+
+    private String annotationFor(final int classIndex, final int methodIndex) {
+        final int slot = classIndex * METHODS_PER_CLASS + methodIndex;
+        // Spread annotated methods evenly rather than randomly so runs are repeatable
+        if (Math.floor((slot + 1) * annotationDensity) == Math.floor(slot * annotationDensity)) {
+            return null;
+        }
+        return (slot % 3 == 0) ? KNOWN_ACCEPTED_DEFECT_ANNOTATION_CLASS : KNOWN_DEFECT_ANNOTATION_CLASS;
+    }
+
+    /**
+     * Get the members an annotation is written with, using the members each KD annotation type declares.
+     */
+    private static Map<String, String> membersFor(final String annotationClass, final int classIndex, final int methodIndex) {
+        final Map<String, String> members = new LinkedHashMap<String, String>();
+        if (KNOWN_DEFECT_ANNOTATION_CLASS.equals(annotationClass)) {
+            members.put("value", "Synthetic defect " + classIndex + "." + methodIndex);
+        } else {
+            members.put("author", "author" + (classIndex % 7));
+            members.put("date", "2013-01-01");
+            members.put("reason", "Synthetic accepted defect " + classIndex + "." + methodIndex);
+        }
+        return members;
+    }
+
+    private static void write(final File baseDir, final ClassFile cf) throws IOException {
+        final File classFile = new File(baseDir, cf.getName().replace('.', '/') + ".class");
+        if (!classFile.getParentFile().exists() && !classFile.getParentFile().mkdirs()) {
+            throw new IOException("Could not create " + classFile.getParentFile());
+        }
+        final DataOutputStream out = new DataOutputStream(new FileOutputStream(classFile));
+        try {
+            cf.write(out);
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Recursively delete a directory created for a benchmark.
+     * @param file File or directory to delete
+     */
+    static void delete(final File file) {
+        final File[] children = file.listFiles();
+        if (null != children) {
+            for (final File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}
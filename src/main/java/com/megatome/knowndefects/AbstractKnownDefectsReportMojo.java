@@ -0,0 +1,892 @@
+package com.megatome.knowndefects;
+
+/*
+ * Copyright 2012-2013 Megatome Technologies LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import com.megatome.knowndefects.info.AnnotationInformation;
+import com.megatome.knowndefects.info.KnownDefectInformation;
+import com.megatome.knowndefects.report.JsonReportWriter;
+import com.megatome.knowndefects.report.XmlReportWriter;
+import com.megatome.knowndefects.scan.*;
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.repository.ArtifactRepository;
+import org.apache.maven.doxia.sink.Sink;
+import org.apache.maven.doxia.siterenderer.Renderer;
+import org.apache.maven.project.MavenProject;
+import org.apache.maven.reporting.AbstractMavenReport;
+import org.apache.maven.reporting.MavenReport;
+import org.apache.maven.reporting.MavenReportException;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Base for the goals that create a report of KnownDefect annotations. Holds the report configuration and
+ * renders the results; subclasses decide how the results are collected and whether a build is forked first.
+ *
+ * @author cjohnston
+ */
+public abstract class AbstractKnownDefectsReportMojo extends AbstractMavenReport implements MavenReport {
+    public static final String KD_PREFIX = "kd.";
+    public static final String KAD_PREFIX = "kad.";
+    public static final String KDPACKAGE = "kdpackage";
+    public static final String KADPACKAGE = "kadpackage";
+    public static final String XML = "xml";
+    public static final String HTML = "html";
+    public static final String JSON = "json";
+    static final String SNAPSHOT_PATH = "knowndefects/scan.snapshot";
+    /**
+     * <i>Maven Internal</i>: The project descriptor
+     *
+     * @parameter expression="${project}"
+     * @required
+     * @readonly
+     */
+    private MavenProject project;
+
+    /**
+     * Report output dir
+     *
+     * @parameter expression="${project.reporting.outputDirectory}"
+     */
+    private File outputDirectory;
+
+    /**
+     * The list of directories containing source to be scanned.
+     * Normally will only be test code.
+     *
+     * @parameter default-value="${project.build.testOutputDirectory}"
+     * @required
+     * @readonly
+     */
+    private List sourceRoots;
+
+    /**
+     * Jar or zip archives containing additional classes to be scanned, such as <code>-tests.jar</code>
+     * artifacts produced by other modules.
+     *
+     * @parameter
+     */
+    private List archives;
+
+    /**
+     * Test classpath dependencies to scan, given as <code>groupId:artifactId</code> or
+     * <code>groupId:artifactId:classifier</code>, i.e. <code>com.example:fixtures:tests</code>. The results for
+     * released versions are cached in the local repository, so each released artifact is only scanned once.
+     *
+     * @parameter
+     */
+    private List scanDependencies;
+
+    /**
+     * Packages to scan in the test classes and archives, i.e. <code>com.example</code>. Subpackages are scanned
+     * too, and a <code>*</code> matches any single package name. Directories outside of these packages are not
+     * walked. When empty every package is scanned. Dependencies are always scanned in full, so that their cached
+     * results do not depend on these patterns.
+     *
+     * @parameter
+     */
+    private List includePackages;
+
+    /**
+     * Packages never scanned in the test classes and archives, in addition to the JDK packages. Uses the same
+     * patterns as <code>includePackages</code> and takes precedence over them.
+     *
+     * @parameter
+     */
+    private List excludePackages;
+
+    /**
+     * Parser used to find the annotations in each class file. <code>javassist</code> reads each class fully, while
+     * <code>skip-code</code> reads only the method annotations and skips over the method code.
+     *
+     * @parameter expression="${knowndefects.parser}" default-value="javassist"
+     */
+    private String parser;
+
+    /**
+     * <i>Maven Internal</i>: The local repository, used to cache the results of released dependencies
+     *
+     * @parameter expression="${localRepository}"
+     * @required
+     * @readonly
+     */
+    private ArtifactRepository localRepository;
+
+    /**
+     * Site renderer
+     *
+     * @component
+     */
+    private Renderer renderer;
+
+    /**
+     * Report output format. Can be 'xml', 'json' or 'html'. Defaults to 'html'.
+     * A 'json' report is always written as a single file.
+     *
+     * @parameter expression="${knowndefects.report.format}" default-value="html"
+     */
+    private String format;
+
+    /**
+     * Write a single XML report for all classes instead of one file per class.
+     *
+     * @parameter expression="${knowndefects.report.aggregate}" default-value="false"
+     */
+    private boolean aggregateReport;
+
+    /**
+     * Number of threads used to write per-class XML reports. A value of 0 uses the number of available
+     * processors, and a value of 1 writes on the build thread.
+     *
+     * @parameter expression="${knowndefects.report.threads}" default-value="0"
+     */
+    private int reportThreads;
+
+    /**
+     * Number of threads used to scan class files. A value of 0 uses the number of available processors,
+     * and a value of 1 scans on the build thread.
+     *
+     * @parameter expression="${knowndefects.scan.threads}" default-value="0"
+     */
+    private int scanThreads;
+
+    /**
+     * File used to cache scan results between builds, so that only changed class files are scanned again.
+     *
+     * @parameter default-value="${project.build.directory}/knowndefects/scan.cache"
+     */
+    private File scanCacheFile;
+
+    /**
+     * File the results of the module's own classes are saved to, for the <code>aggregate</code> goal and as a
+     * baseline for later builds.
+     *
+     * @parameter default-value="${project.build.directory}/knowndefects/scan.snapshot"
+     * @readonly
+     */
+    private File snapshotFile;
+
+    /**
+     * Ignore any cached scan results and scan every class file again.
+     *
+     * @parameter expression="${knowndefects.scan.force}" default-value="false"
+     */
+    private boolean forceScan;
+
+    /**
+     * Snapshot of an earlier scan to compare against, such as a copy of <code>target/knowndefects/scan.snapshot</code>
+     * from a previous build. The snapshot file itself may be used, since the baseline is read before the scan replaces
+     * it. When set, only the annotations added, removed or changed since the baseline are reported. Like the snapshot,
+     * the comparison covers only the module's own classes; <code>archives</code> and <code>scanDependencies</code> are
+     * not scanned.
+     *
+     * @parameter expression="${knowndefects.baseline}"
+     */
+    private File baselineFile;
+
+    /**
+     * Write the scan and render metrics to <code>knowndefects/metrics.json</code> in the output directory.
+     * The metrics are always logged.
+     *
+     * @parameter expression="${knowndefects.metrics}" default-value="false"
+     */
+    private boolean writeMetrics;
+
+    private boolean externalReport = false;
+
+
+    @Override
+    public boolean isExternalReport() {
+        return externalReport;
+    }
+
+    @Override
+    protected MavenProject getProject() {
+        return project;
+    }
+
+    @Override
+    protected String getOutputDirectory() {
+        return outputDirectory.getAbsolutePath();
+    }
+
+    @Override
+    public Renderer getSiteRenderer() {
+        return renderer;
+    }
+
+    @Override
+    public String getOutputName() {
+        return "knowndefects/index";
+    }
+
+    public List getSourceRoots() {
+        return sourceRoots;
+    }
+
+    @Override
+    protected void executeReport(Locale locale) throws MavenReportException {
+        selectFormat();
+
+        if (!outputDirectory.exists()) {
+            if (!outputDirectory.mkdirs()) {
+                throw new MavenReportException("Could not create report output directory");
+            }
+        }
+
+        // Read the baseline before scanning, since the scan replaces the snapshot the baseline may have been taken from
+        final AnnotationScanResults baseline = (null == baselineFile) ? null : loadBaseline();
+        final ScanMetrics metrics = new ScanMetrics();
+        final AnnotationScanResults scanResults = collectResults(metrics, null != baseline).freeze();
+        final long renderStart = System.nanoTime();
+        if (null != baseline) {
+            renderDiff(locale, ScanDiff.compare(baseline, scanResults));
+        } else {
+            renderReport(locale, scanResults);
+        }
+        metrics.addRender(System.nanoTime() - renderStart);
+
+        getLog().info("Known defects report " + metrics);
+        if (writeMetrics) {
+            final File metricsFile = new File(getReportsDirectory(), "metrics.json");
+            try {
+                new JsonReportWriter().writeMetrics(metricsFile, metrics);
+            } catch (IOException e) {
+                getLog().warn("Could not save metrics to " + metricsFile, e);
+            }
+        }
+    }
+
+    private void selectFormat() throws MavenReportException {
+        if (XML.equalsIgnoreCase(format)) {
+            getLog().info("Setting report type to XML");
+            this.externalReport = true;
+        } else if (JSON.equalsIgnoreCase(format)) {
+            getLog().info("Setting report type to JSON");
+            this.externalReport = true;
+        } else if (HTML.equalsIgnoreCase(format)) {
+            getLog().info("Setting report type to HTML");
+            this.externalReport = false;
+        } else {
+            throw new MavenReportException("Specified format type " + format + " is invalid. Must be one of 'xml', 'json' or 'html'");
+        }
+    }
+
+    /**
+     * Collect the results to report on.
+     * @param metrics Metrics to record the scan in
+     * @param snapshotOnly True to collect only what a saved snapshot covers, so the results can be compared
+     *                     with a baseline snapshot
+     * @return Results to report on
+     * @throws MavenReportException If the results cannot be collected
+     */
+    protected AnnotationScanResults collectResults(final ScanMetrics metrics, final boolean snapshotOnly) throws MavenReportException {
+        final AnnotationScanResults scanResults = scanSources(metrics);
+        if (snapshotOnly) {
+            return scanResults;
+        }
+        scanArchives(scanResults, metrics);
+        getLog().debug("Annotation scan " + metrics);
+        if ((null != scanDependencies) && !scanDependencies.isEmpty()) {
+            final AnnotationScanner dependencyScanner = AnnotationScanner.builder().threads(scanThreads).parser(selectParser()).build();
+            scanResults.merge(scanDependencies(dependencyScanner, metrics));
+        }
+        return scanResults;
+    }
+
+    /**
+     * Get the snapshot file the results of a module's own classes are saved to.
+     * @param project Module
+     * @return Snapshot file
+     */
+    static File getSnapshotFile(final MavenProject project) {
+        return new File(project.getBuild().getDirectory(), SNAPSHOT_PATH);
+    }
+
+    /**
+     * Scan the module's own classes and save them as the module's snapshot.
+     * @param metrics Metrics to record the scan in
+     * @return Results of the module's classes
+     * @throws MavenReportException If the classes cannot be scanned
+     */
+    private AnnotationScanResults scanSources(final ScanMetrics metrics) throws MavenReportException {
+        final ScanCache scanCache = forceScan ? ScanCache.create(scanCacheFile) : ScanCache.load(scanCacheFile);
+        final AnnotationScanner scanner = createScanner(scanCache);
+        final AnnotationScanResults scanResults = new AnnotationScanResults();
+        for (final Object obj : getSourceRoots()) {
+            final String path = (String)obj;
+            if (!new File(path).exists()) {
+                // Modules without tests, such as reactor parents, have no test output directory
+                getLog().debug("Skipping missing source root " + path);
+                continue;
+            }
+            try {
+                scanResults.merge(scanner.scan(path, metrics));
+            } catch (AnnotationScanException e) {
+                getLog().error("Could not load annotations", e);
+                throw new MavenReportException("Failed to scan test classes", e);
+            }
+        }
+        try {
+            scanCache.save();
+        } catch (IOException e) {
+            getLog().warn("Could not save scan cache to " + scanCacheFile, e);
+        }
+        try {
+            ScanSnapshot.write(snapshotFile, scanResults);
+        } catch (IOException e) {
+            getLog().warn("Could not save scan snapshot to " + snapshotFile, e);
+        }
+        return scanResults;
+    }
+
+    private void scanArchives(final AnnotationScanResults scanResults, final ScanMetrics metrics) throws MavenReportException {
+        if ((null != archives) && !archives.isEmpty()) {
+            final List<String> archivePaths = new ArrayList<String>();
+            for (final Object obj : archives) {
+                archivePaths.add(String.valueOf(obj));
+            }
+            try {
+                scanResults.merge(createScanner(null).scanArchives(archivePaths, metrics));
+            } catch (AnnotationScanException e) {
+                getLog().error("Could not load annotations", e);
+                throw new MavenReportException("Failed to scan test archives", e);
+            }
+        }
+    }
+
+    private AnnotationScanner createScanner(final ScanCache scanCache) throws MavenReportException {
+        final AnnotationScanner.Builder builder = AnnotationScanner.builder().threads(scanThreads).cache(scanCache)
+                .parser(selectParser());
+        if (null != includePackages) {
+            for (final Object obj : includePackages) {
+                builder.includePackage(String.valueOf(obj).trim());
+            }
+        }
+        if (null != excludePackages) {
+            for (final Object obj : excludePackages) {
+                builder.ignorePackage(String.valueOf(obj).trim());
+            }
+        }
+        try {
+            return builder.build();
+        } catch (IllegalArgumentException e) {
+            throw new MavenReportException("Invalid package pattern: " + e.getMessage(), e);
+        }
+    }
+
+    private ClassParserType selectParser() throws MavenReportException {
+        try {
+            return ClassParserType.valueOf(parser.trim().toUpperCase(Locale.ENGLISH).replace('-', '_'));
+        } catch (IllegalArgumentException e) {
+            throw new MavenReportException("Specified parser " + parser + " is invalid. Must be one of 'javassist' or 'skip-code'");
+        }
+    }
+
+    private AnnotationScanResults scanDependencies(final AnnotationScanner scanner, final ScanMetrics metrics) throws MavenReportException {
+        final ArtifactCache artifactCache = new ArtifactCache(new File(localRepository.getBasedir(), ".cache/knowndefects"));
+        final AnnotationScanResults scanResults = new AnnotationScanResults();
+        for (final Object obj : project.getArtifacts()) {
+            final Artifact artifact = (Artifact) obj;
+            if ((null == artifact.getFile()) || !isSelected(artifact)) {
+                continue;
+            }
+            final boolean cacheable = !artifact.isSnapshot() && artifact.getFile().isFile();
+            AnnotationScanResults artifactResults = null;
+            if (cacheable && !forceScan) {
+                artifactResults = artifactCache.get(artifact.getGroupId(), artifact.getArtifactId(), artifact.getVersion(), artifact.getClassifier());
+            }
+            if (null == artifactResults) {
+                getLog().debug("Scanning dependency " + artifact);
+                try {
+                    artifactResults = scanner.scan(artifact.getFile().getAbsolutePath(), metrics);
+                } catch (AnnotationScanException e) {
+                    getLog().error("Could not load annotations", e);
+                    throw new MavenReportException("Failed to scan dependency " + artifact, e);
+                }
+                if (cacheable) {
+                    try {
+                        artifactCache.put(artifact.getGroupId(), artifact.getArtifactId(), artifact.getVersion(), artifact.getClassifier(), artifactResults);
+                    } catch (IOException e) {
+                        getLog().warn("Could not cache scan results for " + artifact, e);
+                    }
+                }
+            } else {
+                getLog().debug("Using cached scan results for " + artifact);
+            }
+            scanResults.merge(artifactResults);
+        }
+        return scanResults;
+    }
+
+    private boolean isSelected(final Artifact artifact) {
+        for (final Object obj : scanDependencies) {
+            final String[] parts = String.valueOf(obj).trim().split(":");
+            if ((parts.length < 2) || !parts[0].equals(artifact.getGroupId()) || !parts[1].equals(artifact.getArtifactId())) {
+                continue;
+            }
+            if ((parts.length < 3) || parts[2].equals(artifact.getClassifier())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Render the report for scan results in the configured format. Package visible so the rendering can be
+     * benchmarked without scanning.
+     * @param locale Report locale
+     * @param scanResults Results to render
+     * @throws MavenReportException If the report cannot be written
+     */
+    void renderReport(final Locale locale, final AnnotationScanResults scanResults) throws MavenReportException {
+        if (HTML.equalsIgnoreCase(format)) {
+            createHTMLReport(locale, scanResults);
+        } else if (JSON.equalsIgnoreCase(format)) {
+            createJSONReport(scanResults);
+        } else if (aggregateReport) {
+            createAggregateXMLReport(scanResults);
+        } else {
+            createXMLReports(scanResults);
+        }
+    }
+
+    private AnnotationScanResults loadBaseline() throws MavenReportException {
+        try {
+            return ScanSnapshot.read(baselineFile);
+        } catch (IOException e) {
+            throw new MavenReportException("Failed to read baseline " + baselineFile, e);
+        }
+    }
+
+    /**
+     * Render only the differences from the baseline in the configured format.
+     * @param locale Report locale
+     * @param diff Differences to render
+     * @throws MavenReportException If the report cannot be written
+     */
+    void renderDiff(final Locale locale, final ScanDiff diff) throws MavenReportException {
+        getLog().info("Known defects since baseline: " + diff.getAddedCount() + " added, " + diff.getRemovedCount()
+                + " removed, " + diff.getChangedCount() + " changed");
+        if (HTML.equalsIgnoreCase(format)) {
+            createHTMLDiffReport(locale, diff);
+            return;
+        }
+        final boolean json = JSON.equalsIgnoreCase(format);
+        final File reportFile = new File(getReportsDirectory(), json ? "knowndefects-diff.json" : "knowndefects-diff.xml");
+        try {
+            if (json) {
+                new JsonReportWriter().writeDiffReport(reportFile, diff);
+            } else {
+                new XmlReportWriter().writeDiffReport(reportFile, diff);
+            }
+        } catch (IOException e) {
+            throw new MavenReportException("Failed to save report " + reportFile.getName(), e);
+        }
+    }
+
+    private void createXMLReports(final AnnotationScanResults scanResults) throws MavenReportException {
+        try {
+            XmlReportWriter.writeClassReports(getReportsDirectory(), scanResults, reportThreads);
+        } catch (IOException e) {
+            throw new MavenReportException("Failed to save XML reports", e);
+        }
+    }
+
+    private void createAggregateXMLReport(final AnnotationScanResults scanResults) throws MavenReportException {
+        final File reportFile = new File(getReportsDirectory(), "knowndefects.xml");
+        try {
+            new XmlReportWriter().writeAggregateReport(reportFile, scanResults);
+        } catch (IOException e) {
+            throw new MavenReportException("Failed to save report " + reportFile.getName(), e);
+        }
+    }
+
+    private void createJSONReport(final AnnotationScanResults scanResults) throws MavenReportException {
+        final File reportFile = new File(getReportsDirectory(), "knowndefects.json");
+        try {
+            new JsonReportWriter().writeAggregateReport(reportFile, scanResults);
+        } catch (IOException e) {
+            throw new MavenReportException("Failed to save report " + reportFile.getName(), e);
+        }
+    }
+
+    private File getReportsDirectory() throws MavenReportException {
+        final File reportsDir = new File(getOutputDirectory(), "knowndefects");
+        if (!reportsDir.exists() && !reportsDir.mkdirs()) {
+            throw new MavenReportException("Could not create report output directory");
+        }
+        return reportsDir;
+    }
+
+    private void createHTMLReport(final Locale locale, final AnnotationScanResults scanResults) {
+        final Sink sink = getSink();
+        sink.head();
+        sink.title();
+        sink.text(getName(locale));
+        sink.title_();
+        sink.head_();
+
+        sink.body();
+
+        sink.section1();
+        sink.sectionTitle1();
+        sink.text(getName(locale));
+        sink.sectionTitle1_();
+        sink.section1_();
+
+        buildSummary(sink, locale, scanResults);
+        buildPackageList(sink, locale, scanResults);
+        buildAnnotationsList(sink, locale, scanResults);
+
+        sink.body_();
+        sink.flush();
+        sink.close();
+    }
+
+    private void createHTMLDiffReport(final Locale locale, final ScanDiff diff) {
+        final Sink sink = getSink();
+        sink.head();
+        sink.title();
+        sink.text(getName(locale));
+        sink.title_();
+        sink.head_();
+
+        sink.body();
+
+        sink.section1();
+        sink.sectionTitle1();
+        sink.anchor("summary");
+        sink.text(getName(locale));
+        sink.anchor_();
+        sink.sectionTitle1_();
+
+        sink.table();
+        sink.tableRow();
+        sink.tableHeaderCell();
+        sink.text(getBundle(locale).getString("diff.change.cell.header"));
+        sink.tableHeaderCell_();
+        sink.tableHeaderCell();
+        sink.text(getBundle(locale).getString("annotation.count.cell.header"));
+        sink.tableHeaderCell_();
+        sink.tableRow_();
+        buildPackageSummaryRow(sink, "added", getBundle(locale).getString("diff.added.name"), diff.getAddedCount());
+        buildPackageSummaryRow(sink, "removed", getBundle(locale).getString("diff.removed.name"), diff.getRemovedCount());
+        buildPackageSummaryRow(sink, "changed", getBundle(locale).getString("diff.changed.name"), diff.getChangedCount());
+        sink.table_();
+        sink.section1_();
+
+        buildDiffSection(sink, locale, "added", getBundle(locale).getString("diff.added.name"), diff.getAdded());
+        buildDiffSection(sink, locale, "removed", getBundle(locale).getString("diff.removed.name"), diff.getRemoved());
+        buildDiffSection(sink, locale, "changed", getBundle(locale).getString("diff.changed.before.name"), diff.getChangedBefore());
+        buildDiffSection(sink, locale, "changed.after", getBundle(locale).getString("diff.changed.after.name"), diff.getChangedAfter());
+
+        sink.body_();
+        sink.flush();
+        sink.close();
+    }
+
+    private void buildDiffSection(final Sink sink, final Locale locale, final String anchor, final String title, final AnnotationScanResults scanResults) {
+        if (!scanResults.hasResults()) {
+            return;
+        }
+        sink.section1();
+        sink.sectionTitle1();
+        sink.anchor(anchor);
+        sink.text(title);
+        sink.anchor_();
+        sink.sectionTitle1_();
+
+        for (final PackageScanResults packageScanResults : scanResults.getAllResults()) {
+            for (final String className : packageScanResults.getClassNames()) {
+                buildClassAnnotations(sink, locale, packageScanResults, className, anchor + "." + packageScanResults.getPackageName() + ".");
+            }
+        }
+        sink.section1_();
+    }
+
+    private void buildNavLinks(final Sink sink, final Locale locale) {
+        sink.paragraph();
+        sink.text("[");
+        sink.link("#summary");
+        sink.text(getBundle(locale).getString("summary.link.name"));
+        sink.link_();
+        sink.text("][");
+        sink.link("#package");
+        sink.text(getBundle(locale).getString("packagelist.link.name"));
+        sink.link_();
+        sink.text("][");
+        sink.link("#annotations");
+        sink.text(getBundle(locale).getString("annotations.link.name"));
+        sink.link_();
+        sink.text("]");
+        sink.paragraph_();
+    }
+
+    private void buildSummary(final Sink sink, final Locale locale, final AnnotationScanResults scanResults) {
+        sink.section1();
+        sink.sectionTitle1();
+        sink.anchor("summary");
+        sink.text(getBundle(locale).getString("summary.link.name"));
+        sink.anchor_();
+        sink.sectionTitle1_();
+
+        buildNavLinks(sink, locale);
+
+        sink.table();
+        sink.tableRow();
+        sink.tableHeaderCell();
+        sink.text(getBundle(locale).getString("annotation.name.cell.header"));
+        sink.tableHeaderCell_();
+        sink.tableHeaderCell();
+        sink.text(getBundle(locale).getString("annotation.count.cell.header"));
+        sink.tableHeaderCell_();
+        sink.tableRow_();
+
+        if (scanResults.hasKnownDefectResults()) {
+            buildPackageSummaryRow(sink, KDPACKAGE, getBundle(locale).getString("knowndefect.annotation.name"), scanResults.getKnownDefectResultsCount());
+        }
+
+        if (scanResults.hasKnownAcceptedDefectResults()) {
+            buildPackageSummaryRow(sink, KADPACKAGE, getBundle(locale).getString("knownaccepteddefect.annotation.name"), scanResults.getKnownAcceptedDefectResultsCount());
+        }
+
+        sink.table_();
+        sink.section1_();
+    }
+
+    private void buildPackageSummaryRow(final Sink sink, final String linkName, final String annotationName, final int count) {
+        sink.tableRow();
+        sink.tableCell();
+        sink.link("#" + linkName);
+        sink.text(annotationName);
+        sink.link_();
+        sink.anchor_();
+        sink.tableCell_();
+        sink.tableCell();
+        sink.text(String.valueOf(count));
+        sink.tableCell_();
+        sink.tableRow_();
+    }
+
+    private void buildPackageList(final Sink sink, final Locale locale, final AnnotationScanResults scanResults) {
+        sink.section1();
+        sink.sectionTitle1();
+        sink.anchor("package");
+        sink.text(getBundle(locale).getString("packagelist.link.name"));
+        sink.anchor_();
+        sink.sectionTitle1_();
+
+        buildNavLinks(sink, locale);
+
+        if (scanResults.hasKnownDefectResults()) {
+            buildPackageSummary(sink, locale, KDPACKAGE, getBundle(locale).getString("knowndefect.annotation.name"), KD_PREFIX, scanResults.getKnownDefectResults());
+        }
+
+        if (scanResults.hasKnownAcceptedDefectResults()) {
+            buildPackageSummary(sink, locale, KADPACKAGE, getBundle(locale).getString("knownaccepteddefect.annotation.name"), KAD_PREFIX, scanResults.getKnownAcceptedDefectResults());
+        }
+        sink.section1_();
+    }
+
+    private void buildPackageSummary(final Sink sink, final Locale locale, final String sectionAnchor, final String annotationName, final String anchorPrefix, final Map<String, List<ClassAnnotation>> resultMap) {
+        sink.section2();
+        sink.sectionTitle2();
+        sink.anchor(sectionAnchor);
+        sink.text(annotationName);
+        sink.anchor_();
+        sink.sectionTitle2_();
+
+        sink.table();
+        sink.tableRow();
+        sink.tableHeaderCell();
+        sink.text(getBundle(locale).getString("package.name.cell.header"));
+        sink.tableHeaderCell_();
+        sink.tableHeaderCell();
+        sink.text(getBundle(locale).getString("annotation.count.cell.header"));
+        sink.tableHeaderCell_();
+        sink.tableRow_();
+
+        for (final Map.Entry<String, List<ClassAnnotation>> entry : resultMap.entrySet()) {
+            buildPackageListSummaryTable(sink, entry.getKey(), entry.getValue().size(), "#" + anchorPrefix);
+        }
+
+        sink.table_();
+
+        for (final Map.Entry<String, List<ClassAnnotation>> entry : resultMap.entrySet()) {
+            buildClassSummary(sink, locale, entry.getKey(), entry.getValue(), anchorPrefix);
+        }
+
+        sink.section2_();
+    }
+
+    private void buildPackageListSummaryTable(final Sink sink, final String packageName, final int annotationCount, final String linkPrefix) {
+        sink.tableRow();
+        sink.tableCell();
+        sink.link(linkPrefix + packageName);
+        sink.text(packageName);
+        sink.link_();
+        sink.tableCell_();
+        sink.tableCell();
+        sink.text(String.valueOf(annotationCount));
+        sink.tableCell_();
+        sink.tableRow_();
+    }
+
+    private void buildClassSummary(final Sink sink, final Locale locale, final String className, final List<ClassAnnotation> annotationList, final String anchorPrefix) {
+        sink.section3();
+        sink.sectionTitle3();
+        sink.anchor(anchorPrefix + className);
+        sink.text(className);
+        sink.anchor_();
+        sink.sectionTitle3_();
+
+        sink.table();
+        sink.tableRow();
+        sink.tableHeaderCell();
+        sink.text(getBundle(locale).getString("class.name.cell.header"));
+        sink.tableHeaderCell_();
+        sink.tableHeaderCell();
+        sink.text(getBundle(locale).getString("annotation.count.cell.header"));
+        sink.tableHeaderCell_();
+        sink.tableRow_();
+
+        for (final ClassAnnotation classAnnotation : annotationList) {
+            buildClassAnnotationSummaryRow(sink, classAnnotation);
+        }
+        sink.table_();
+        sink.section3_();
+    }
+
+    private void buildClassAnnotationSummaryRow(final Sink sink, final ClassAnnotation classAnnotation) {
+        sink.tableRow();
+        sink.tableCell();
+        sink.link("#" + KD_PREFIX + classAnnotation.getClassName());
+        sink.text(classAnnotation.getClassName());
+        sink.link_();
+        sink.tableCell_();
+        sink.tableCell();
+        sink.text(String.valueOf(classAnnotation.getAnnotations().size()));
+        sink.tableCell_();
+        sink.tableRow_();
+    }
+
+    private void buildAnnotationsList(final Sink sink, final Locale locale, final AnnotationScanResults scanResults) {
+        sink.section1();
+        sink.sectionTitle1();
+        sink.anchor("annotations");
+        sink.text(getBundle(locale).getString("annotations.link.name"));
+        sink.anchor_();
+        sink.sectionTitle1_();
+
+        buildNavLinks(sink, locale);
+
+        for (final PackageScanResults packageScanResults : scanResults.getAllResults()) {
+            for (final String className : packageScanResults.getClassNames()) {
+                buildClassAnnotations(sink, locale, packageScanResults, className, KD_PREFIX);
+            }
+        }
+        sink.section1_();
+    }
+
+    private void buildClassAnnotations(final Sink sink, final Locale locale, final PackageScanResults packageScanResults, final String className, final String anchorPrefix) {
+        sink.section2();
+        sink.sectionTitle2();
+        sink.anchor(anchorPrefix + className);
+        sink.text(className);
+        sink.sectionTitle2_();
+
+        if (packageScanResults.hasKnownDefectResults(className)) {
+            buildMethodAnnotationSection(sink, locale,
+                    packageScanResults.getKnownDefectResults(className),
+                    getBundle(locale).getString("knowndefect.annotation.name"),
+                    new String[] {getBundle(locale).getString("note.cell.header")},
+                    new String[] {"value"});
+        }
+
+        if (packageScanResults.hasKnownAcceptedDefectResults(className)) {
+            buildMethodAnnotationSection(sink, locale,
+                    packageScanResults.getKnownAcceptedDefectResults(className),
+                    getBundle(locale).getString("knownaccepteddefect.annotation.name"),
+                    new String[] {getBundle(locale).getString("author.cell.header"), getBundle(locale).getString("date.cell.header"), getBundle(locale).getString("note.cell.header")},
+                    new String[] {"author", "date", "reason"});
+        }
+        sink.section2_();
+    }
+
+    private void buildMethodAnnotationSection(final Sink sink, final Locale locale, final ClassAnnotation classAnnotation, final String sectionName, final String[] columnHeaders, final String[] columnMethodValues) {
+        sink.paragraph();
+        sink.bold();
+        sink.text(sectionName);
+        sink.bold_();
+        sink.paragraph_();
+
+        sink.table();
+        buildMethodAnnotationTableHeader(sink, locale, columnHeaders);
+        buildMethodAnnotationRows(sink, classAnnotation, columnMethodValues);
+        sink.table_();
+    }
+
+    private void buildMethodAnnotationTableHeader(final Sink sink, final Locale locale, final String... columns) {
+        sink.tableRow();
+        sink.tableHeaderCell();
+        sink.text(getBundle(locale).getString("method.name.cell.header"));
+        sink.tableHeaderCell_();
+        sink.tableHeaderCell();
+        sink.text(getBundle(locale).getString("line.number.cell.header"));
+        sink.tableHeaderCell_();
+        for (final String columnName : columns) {
+            sink.tableHeaderCell();
+            sink.text(columnName);
+            sink.tableHeaderCell_();
+        }
+        sink.tableRow_();
+    }
+
+    private void buildMethodAnnotationRows(final Sink sink, final ClassAnnotation classAnnotation, final String... methodValues) {
+        for (final AnnotationInformation information : classAnnotation.getAnnotations()) {
+            sink.tableRow();
+            sink.tableCell();
+            sink.text(information.getMethodName());
+            sink.tableCell_();
+            sink.tableCell();
+            sink.text(String.valueOf(information.getLineNumber()));
+            sink.tableCell_();
+            for (final String methodValue : methodValues) {
+                sink.tableCell();
+                sink.text(information.getMethodValue(methodValue));
+                sink.tableCell_();
+            }
+            sink.tableRow_();
+        }
+    }
+
+    @Override
+    public String getDescription(Locale locale) {
+        return getBundle(locale).getString("report.description");
+    }
+
+    @Override
+    public String getName(Locale locale) {
+        return getBundle(locale).getString("report.name");
+    }
+
+    private ResourceBundle getBundle(Locale locale) {
+        return ResourceBundle.getBundle("knowndefects-report", locale, this.getClass().getClassLoader());
+    }
+}
@@ -0,0 +1,74 @@
+package com.megatome.knowndefects;
+
+/*
+ * Copyright 2012-2013 Megatome Technologies LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import com.megatome.knowndefects.scan.AnnotationScanResults;
+import com.megatome.knowndefects.scan.ScanMetrics;
+import com.megatome.knowndefects.scan.ScanSnapshot;
+import org.apache.maven.project.MavenProject;
+import org.apache.maven.reporting.MavenReportException;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Goal for creating a single report of KnownDefect annotations for every module in a reactor. No class files
+ * are scanned; the report is built from the snapshots saved by the <code>report</code> goal in each module.
+ *
+ * @author cjohnston
+ * @goal aggregate
+ * @aggregator
+ */
+public class KnownDefectsAggregateMojo extends AbstractKnownDefectsReportMojo {
+    /**
+     * <i>Maven Internal</i>: The projects in the reactor
+     *
+     * @parameter expression="${reactorProjects}"
+     * @required
+     * @readonly
+     */
+    private List reactorProjects;
+
+    /**
+     * Number of threads used to read module snapshots. A value of 0 uses the number of available processors.
+     *
+     * @parameter expression="${knowndefects.aggregate.threads}" default-value="0"
+     */
+    private int aggregateThreads;
+
+    @Override
+    protected AnnotationScanResults collectResults(final ScanMetrics metrics, final boolean snapshotOnly) throws MavenReportException {
+        final List<File> snapshots = new ArrayList<File>();
+        for (final Object obj : reactorProjects) {
+            final MavenProject module = (MavenProject) obj;
+            final File snapshot = getSnapshotFile(module);
+            if (snapshot.isFile()) {
+                snapshots.add(snapshot);
+            } else {
+                getLog().debug("No scan snapshot for " + module.getId());
+            }
+        }
+        getLog().info("Aggregating scan snapshots from " + snapshots.size() + " of " + reactorProjects.size() + " modules");
+        try {
+            return ScanSnapshot.readAll(snapshots, aggregateThreads);
+        } catch (IOException e) {
+            throw new MavenReportException("Failed to read scan snapshots", e);
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.megatome.knowndefects;
+
+/*
+ * Copyright 2012-2013 Megatome Technologies LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Goal for creating a report of KnownDefect annotations from the test classes that have already been compiled,
+ * without forking a test run. Run it after <code>test-compile</code> in the same build, i.e.
+ * <code>mvn test-compile knowndefects:report-only</code>, or as a site report when the classes already exist.
+ *
+ * @author cjohnston
+ * @goal report-only
+ * @requiresDependencyResolution test
+ */
+public class KnownDefectsReportOnlyMojo extends AbstractKnownDefectsReportMojo {
+}
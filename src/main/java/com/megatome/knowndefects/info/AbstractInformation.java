@@ -17,31 +17,117 @@
 package com.megatome.knowndefects.info;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
-import java.util.Map;
 
 /**
  * Abstract implementation of AnnotationInformation. Handles common behavior.
+ * <p>Values for the members a subclass declares are kept in fixed slots, and any other member is kept in a
+ * small overflow array, so an instance holds no map. Class names are interned, as every annotation found in a
+ * class shares the name.</p>
  * @see AnnotationInformation
  */
 public abstract class AbstractInformation implements AnnotationInformation {
+    private static final MemberSlots NO_MEMBERS = new MemberSlots();
+
+    private final MemberSlots slots;
+    private final String[] values;
+    private int present;
+    private String[] otherNames;
+    private String[] otherValues;
+    private List<String> allNames;
+
     private String className;
     private String methodName;
     private int lineNumber;
 
-    private final Map<String, String> methods = new HashMap<String, String>();
+    protected AbstractInformation() {
+        this(NO_MEMBERS);
+    }
+
+    /**
+     * @param slots Members the annotation declares
+     */
+    AbstractInformation(final MemberSlots slots) {
+        this.slots = slots;
+        this.values = new String[slots.size()];
+    }
 
+    /**
+     * Get the names of the members that have a value. Known members come first in declaration order, followed
+     * by any other members in the order they were set.
+     * @return Unmodifiable list of names. Does not allocate for annotations with only known members.
+     */
     public List<String> getMethodNames() {
-        return new ArrayList<String>(methods.keySet());
+        return (null == allNames) ? slots.names(present) : allNames;
     }
 
     public String getMethodValue(String methodName) {
-        return methods.get(methodName);
+        final int slot = slots.indexOf(methodName);
+        if (slot >= 0) {
+            return values[slot];
+        }
+        final int other = indexOfOther(methodName);
+        return (other >= 0) ? otherValues[other] : null;
     }
 
     public void setMethodValue(String methodName, String methodValue) {
-        methods.put(methodName, methodValue);
+        final int slot = slots.indexOf(methodName);
+        if (slot >= 0) {
+            values[slot] = methodValue;
+            if ((present & (1 << slot)) == 0) {
+                present |= (1 << slot);
+                if (null != allNames) {
+                    allNames = listNames();
+                }
+            }
+            return;
+        }
+        final int other = indexOfOther(methodName);
+        if (other >= 0) {
+            otherValues[other] = methodValue;
+            return;
+        }
+        if (null == otherNames) {
+            otherNames = new String[] {methodName};
+            otherValues = new String[] {methodValue};
+        } else {
+            final int length = otherNames.length;
+            otherNames = Arrays.copyOf(otherNames, length + 1);
+            otherValues = Arrays.copyOf(otherValues, length + 1);
+            otherNames[length] = methodName;
+            otherValues[length] = methodValue;
+        }
+        allNames = listNames();
+    }
+
+    /**
+     * Get the value of a known member.
+     * @param slot Slot of the member
+     * @return Value, or null if not set
+     */
+    protected String getSlotValue(final int slot) {
+        return values[slot];
+    }
+
+    private int indexOfOther(final String name) {
+        if (null != otherNames) {
+            for (int i = 0; i < otherNames.length; i++) {
+                if (otherNames[i].equals(name)) {
+                    return i;
+                }
+            }
+        }
+        return -1;
+    }
+
+    private List<String> listNames() {
+        final List<String> known = slots.names(present);
+        final List<String> names = new ArrayList<String>(known.size() + otherNames.length);
+        names.addAll(known);
+        Collections.addAll(names, otherNames);
+        return Collections.unmodifiableList(names);
     }
 
     public String getClassName() {
@@ -49,7 +135,7 @@ public abstract class AbstractInformation implements AnnotationInformation {
     }
 
     public void setClassName(String className) {
-        this.className = className;
+        this.className = (null == className) ? null : className.intern();
     }
 
     public String getMethodName() {
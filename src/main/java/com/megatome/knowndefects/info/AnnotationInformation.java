@@ -29,8 +29,9 @@ public interface AnnotationInformation extends Comparable<AnnotationInformation>
     String getAnnotationName();
 
     /**
-     * Get the list of all found method names within the annotation.
-     * @return Found annotation method names. Will be empty if none found.
+     * Get the list of all found method names within the annotation. The list is read-only and may be shared
+     * between annotations, so copy it before changing it.
+     * @return Unmodifiable list of found annotation method names. Will be empty if none found.
      */
     public List<String> getMethodNames();
 
@@ -23,12 +23,21 @@ import com.megatome.knowndefects.Constants;
  * @see AnnotationInformation
  */
 public class KnownAcceptedDefectInformation extends AbstractInformation {
+    private static final MemberSlots MEMBERS = new MemberSlots("author", "date", "reason");
+    private static final int AUTHOR = 0;
+    private static final int DATE = 1;
+    private static final int REASON = 2;
+
+    public KnownAcceptedDefectInformation() {
+        super(MEMBERS);
+    }
+
     /**
      * Return the author value
      * @return Author
      */
     public String getAuthor() {
-        return getMethodValue("author");
+        return getSlotValue(AUTHOR);
     }
 
     /**
@@ -36,7 +45,7 @@ public class KnownAcceptedDefectInformation extends AbstractInformation {
      * @return Date string
      */
     public String getDate() {
-        return getMethodValue("date");
+        return getSlotValue(DATE);
     }
 
     /**
@@ -44,7 +53,7 @@ public class KnownAcceptedDefectInformation extends AbstractInformation {
      * @return Reason
      */
     public String getReason() {
-        return getMethodValue("reason");
+        return getSlotValue(REASON);
     }
 
     @Override
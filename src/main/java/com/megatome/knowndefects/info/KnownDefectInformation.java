@@ -23,12 +23,19 @@ import com.megatome.knowndefects.Constants;
  * @see AnnotationInformation
  */
 public class KnownDefectInformation extends AbstractInformation {
+    private static final MemberSlots MEMBERS = new MemberSlots("value");
+    private static final int VALUE = 0;
+
+    public KnownDefectInformation() {
+        super(MEMBERS);
+    }
+
     /**
      * Get the value for this annotation
      * @return value
      */
     public String getValue() {
-        return getMethodValue("value");
+        return getSlotValue(VALUE);
     }
 
     @Override
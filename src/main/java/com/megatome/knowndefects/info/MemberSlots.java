@@ -0,0 +1,81 @@
+/*******************************************************************************
+ * Copyright (c) 2011-2013 Megatome Technologies
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.megatome.knowndefects.info;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The members an annotation is known to declare, each given a fixed slot. The lists of names for every
+ * combination of present members are built once, so information objects can hand them out without allocating.
+ */
+final class MemberSlots {
+    private final String[] names;
+    private final List<String>[] namesByMask;
+
+    @SuppressWarnings("unchecked")
+    MemberSlots(final String... names) {
+        if (names.length > 8) {
+            throw new IllegalArgumentException("Too many member slots");
+        }
+        this.names = names.clone();
+        this.namesByMask = new List[1 << names.length];
+        for (int mask = 0; mask < namesByMask.length; mask++) {
+            final List<String> present = new ArrayList<String>(Integer.bitCount(mask));
+            for (int slot = 0; slot < names.length; slot++) {
+                if ((mask & (1 << slot)) != 0) {
+                    present.add(names[slot]);
+                }
+            }
+            namesByMask[mask] = Collections.unmodifiableList(present);
+        }
+    }
+
+    int size() {
+        return names.length;
+    }
+
+    /**
+     * Find the slot for a member.
+     * @param name Member name
+     * @return Slot, or -1 if the member is not known
+     */
+    int indexOf(final String name) {
+        for (int slot = 0; slot < names.length; slot++) {
+            if (names[slot].equals(name)) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Get the names of the present members, in slot order.
+     * @param mask Bit set of present slots
+     * @return Shared, unmodifiable list of names
+     */
+    List<String> names(final int mask) {
+        return namesByMask[mask];
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(names);
+    }
+}
@@ -0,0 +1,221 @@
+/*******************************************************************************
+ * Copyright (c) 2011-2013 Megatome Technologies
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.megatome.knowndefects.report;
+
+import com.megatome.knowndefects.info.AnnotationInformation;
+import com.megatome.knowndefects.scan.AnnotationScanResults;
+import com.megatome.knowndefects.scan.ClassAnnotation;
+import com.megatome.knowndefects.scan.PackageScanResults;
+import com.megatome.knowndefects.scan.ScanDiff;
+import com.megatome.knowndefects.scan.ScanMetrics;
+
+import java.io.*;
+
+/**
+ * Writes a single compact JSON report containing every class in the scan results, in package and class order.
+ * The report is streamed to the file as it is produced:
+ * <pre>
+ * {"packages":[{"name":"...","classes":[{"name":"...","annotations":[
+ *     {"type":"...","method":"...","line":0,"properties":{"name":"value"}}]}]}]}
+ * </pre>
+ * <p>The diff report holds one such object for each kind of difference:
+ * <code>{"added":{...},"removed":{...},"changed":{"before":{...},"after":{...}}}</code>.</p>
+ * <p>Scan metrics can be written to a separate file as a flat object of counts and millisecond timings.</p>
+ */
+public class JsonReportWriter {
+    private static final String ENCODING = "UTF-8";
+    private static final int BUFFER_SIZE = 16 * 1024;
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    /**
+     * Write the report.
+     * @param file File to write
+     * @param scanResults Results to write
+     * @throws IOException If the report cannot be written
+     */
+    public void writeAggregateReport(final File file, final AnnotationScanResults scanResults) throws IOException {
+        final Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), ENCODING), BUFFER_SIZE);
+        try {
+            write(out, scanResults);
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Write the report to a writer.
+     * @param out Writer to write to. Will not be closed.
+     * @param scanResults Results to write
+     * @throws IOException If the report cannot be written
+     */
+    public void write(final Writer out, final AnnotationScanResults scanResults) throws IOException {
+        out.write("{\"packages\":[");
+        boolean firstPackage = true;
+        for (final PackageScanResults packageScanResults : scanResults.getAllResults()) {
+            if (!firstPackage) out.write(',');
+            firstPackage = false;
+            out.write("{\"name\":");
+            writeString(out, packageScanResults.getPackageName());
+            out.write(",\"classes\":[");
+            boolean firstClass = true;
+            for (final String className : packageScanResults.getClassNames()) {
+                if (!firstClass) out.write(',');
+                firstClass = false;
+                writeClass(out, packageScanResults.getClassResults(className));
+            }
+            out.write("]}");
+        }
+        out.write("]}");
+    }
+
+    /**
+     * Write a report of the differences between two scans.
+     * @param file File to write
+     * @param diff Differences to write
+     * @throws IOException If the report cannot be written
+     */
+    public void writeDiffReport(final File file, final ScanDiff diff) throws IOException {
+        final Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), ENCODING), BUFFER_SIZE);
+        try {
+            writeDiff(out, diff);
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Write a report of the differences between two scans to a writer.
+     * @param out Writer to write to. Will not be closed.
+     * @param diff Differences to write
+     * @throws IOException If the report cannot be written
+     */
+    public void writeDiff(final Writer out, final ScanDiff diff) throws IOException {
+        out.write("{\"added\":");
+        write(out, diff.getAdded());
+        out.write(",\"removed\":");
+        write(out, diff.getRemoved());
+        out.write(",\"changed\":{\"before\":");
+        write(out, diff.getChangedBefore());
+        out.write(",\"after\":");
+        write(out, diff.getChangedAfter());
+        out.write("}}");
+    }
+
+    /**
+     * Write scan metrics.
+     * @param file File to write
+     * @param metrics Metrics to write
+     * @throws IOException If the metrics cannot be written
+     */
+    public void writeMetrics(final File file, final ScanMetrics metrics) throws IOException {
+        final Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), ENCODING));
+        try {
+            writeMetrics(out, metrics);
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Write scan metrics to a writer.
+     * @param out Writer to write to. Will not be closed.
+     * @param metrics Metrics to write
+     * @throws IOException If the metrics cannot be written
+     */
+    public void writeMetrics(final Writer out, final ScanMetrics metrics) throws IOException {
+        out.write("{\"filesVisited\":" + metrics.getFilesVisited());
+        out.write(",\"filesFiltered\":" + metrics.getFilesFiltered());
+        out.write(",\"directoriesPruned\":" + metrics.getDirectoriesPruned());
+        out.write(",\"classesRead\":" + metrics.getClassesRead());
+        out.write(",\"classesPrefiltered\":" + metrics.getClassesPrefiltered());
+        out.write(",\"classesParsed\":" + metrics.getClassesParsed());
+        out.write(",\"annotatedMethods\":" + metrics.getAnnotatedMethods());
+        out.write(",\"lineNumbersResolved\":" + metrics.getLineNumbersResolved());
+        out.write(",\"bytesRead\":" + metrics.getBytesRead());
+        out.write(",\"annotationsFound\":" + metrics.getAnnotationsFound());
+        out.write(",\"walkMillis\":" + metrics.getWalkMillis());
+        out.write(",\"parseMillis\":" + metrics.getParseMillis());
+        out.write(",\"aggregateMillis\":" + metrics.getAggregateMillis());
+        out.write(",\"renderMillis\":" + metrics.getRenderMillis());
+        out.write('}');
+    }
+
+    private void writeClass(final Writer out, final ClassAnnotation classResults) throws IOException {
+        out.write("{\"name\":");
+        writeString(out, classResults.getClassName());
+        out.write(",\"annotations\":[");
+        boolean firstAnnotation = true;
+        for (final AnnotationInformation information : classResults.getAnnotations()) {
+            if (!firstAnnotation) out.write(',');
+            firstAnnotation = false;
+            out.write("{\"type\":");
+            writeString(out, information.getAnnotationName());
+            out.write(",\"method\":");
+            writeString(out, information.getMethodName());
+            out.write(",\"line\":");
+            out.write(String.valueOf(information.getLineNumber()));
+            out.write(",\"properties\":{");
+            boolean firstProperty = true;
+            for (final String methodName : information.getMethodNames()) {
+                if (!firstProperty) out.write(',');
+                firstProperty = false;
+                writeString(out, methodName);
+                out.write(':');
+                writeString(out, information.getMethodValue(methodName));
+            }
+            out.write("}}");
+        }
+        out.write("]}");
+    }
+
+    private static void writeString(final Writer out, final String value) throws IOException {
+        if (null == value) {
+            out.write("null");
+            return;
+        }
+        out.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    out.write("\\\"");
+                    break;
+                case '\\':
+                    out.write("\\\\");
+                    break;
+                case '\n':
+                    out.write("\\n");
+                    break;
+                case '\r':
+                    out.write("\\r");
+                    break;
+                case '\t':
+                    out.write("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        out.write("\\u00");
+                        out.write(HEX[c >> 4]);
+                        out.write(HEX[c & 0xF]);
+                    } else {
+                        out.write(c);
+                    }
+            }
+        }
+        out.write('"');
+    }
+}
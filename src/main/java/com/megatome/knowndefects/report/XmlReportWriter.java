@@ -0,0 +1,246 @@
+/*******************************************************************************
+ * Copyright (c) 2011-2013 Megatome Technologies
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.megatome.knowndefects.report;
+
+import com.megatome.knowndefects.info.AnnotationInformation;
+import com.megatome.knowndefects.scan.AnnotationScanResults;
+import com.megatome.knowndefects.scan.ClassAnnotation;
+import com.megatome.knowndefects.scan.PackageScanResults;
+import com.megatome.knowndefects.scan.ScanDiff;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * Writes the XML report for a class with a streaming <code>XMLStreamWriter</code>, so no document is built in
+ * memory. The output uses the same elements as before:
+ * <pre>
+ * &lt;annotationResults&gt;
+ *     &lt;package&gt;...&lt;/package&gt;
+ *     &lt;className&gt;...&lt;/className&gt;
+ *     &lt;annotation type="..." method="..."&gt;
+ *         &lt;properties&gt;
+ *             &lt;property name="..." value="..."/&gt;
+ *         &lt;/properties&gt;
+ *     &lt;/annotation&gt;
+ * &lt;/annotationResults&gt;
+ * </pre>
+ * <p>The aggregate report wraps the <code>annotationResults</code> element of every class in a single
+ * <code>knownDefects</code> element, in package and class order. The diff report groups them in
+ * <code>added</code>, <code>removed</code> and <code>changed</code> elements inside a
+ * <code>knownDefectsDiff</code> element, with the <code>changed</code> element holding a <code>before</code> and
+ * an <code>after</code> element.</p>
+ * <p>Instances are not thread safe. {@link #writeClassReports(File, AnnotationScanResults, int)} gives each
+ * of its threads its own writer.</p>
+ */
+public class XmlReportWriter {
+    private static final String ENCODING = "UTF-8";
+    private static final int BUFFER_SIZE = 16 * 1024;
+
+    private final XMLOutputFactory factory = XMLOutputFactory.newInstance();
+
+    /**
+     * Write the report for a single class.
+     * @param file File to write
+     * @param classResults Annotations found in the class
+     * @throws IOException If the report cannot be written
+     */
+    public void writeClassReport(final File file, final ClassAnnotation classResults) throws IOException {
+        final OutputStream out = new BufferedOutputStream(new FileOutputStream(file), BUFFER_SIZE);
+        try {
+            final XMLStreamWriter writer = factory.createXMLStreamWriter(out, ENCODING);
+            writer.writeStartDocument(ENCODING, "1.0");
+            writeClass(writer, classResults);
+            writer.writeEndDocument();
+            writer.close();
+        } catch (XMLStreamException e) {
+            throw new IOException("Failed to write report " + file, e);
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Write a report for every class in the scan results, one file per class named
+     * <code>package.Class.xml</code>. Packages are spread across the given number of threads.
+     * @param reportsDir Directory to write the reports to
+     * @param scanResults Results to write
+     * @param threads Number of threads to write with. A value less than 1 uses the number of available
+     *                processors, and a value of 1 writes on the calling thread.
+     * @throws IOException If a report cannot be written
+     */
+    public static void writeClassReports(final File reportsDir, final AnnotationScanResults scanResults, final int threads) throws IOException {
+        final int parallelism = (threads < 1) ? Runtime.getRuntime().availableProcessors() : threads;
+        final List<PackageScanResults> allResults = scanResults.getAllResults();
+        if ((parallelism == 1) || (allResults.size() < 2)) {
+            final XmlReportWriter writer = new XmlReportWriter();
+            for (final PackageScanResults packageScanResults : allResults) {
+                writer.writePackageReports(reportsDir, packageScanResults);
+            }
+            return;
+        }
+
+        final ThreadLocal<XmlReportWriter> writers = new ThreadLocal<XmlReportWriter>() {
+            @Override
+            protected XmlReportWriter initialValue() {
+                return new XmlReportWriter();
+            }
+        };
+        final ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallelism, allResults.size()));
+        try {
+            final List<Future<Void>> futures = new ArrayList<Future<Void>>(allResults.size());
+            for (final PackageScanResults packageScanResults : allResults) {
+                futures.add(executor.submit(new Callable<Void>() {
+                    public Void call() throws IOException {
+                        writers.get().writePackageReports(reportsDir, packageScanResults);
+                        return null;
+                    }
+                }));
+            }
+            for (final Future<Void> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            final InterruptedIOException interrupted = new InterruptedIOException("Report generation was interrupted");
+            interrupted.initCause(e);
+            throw interrupted;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Failed to write reports", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void writePackageReports(final File reportsDir, final PackageScanResults packageScanResults) throws IOException {
+        for (final String className : packageScanResults.getClassNames()) {
+            final String fileName = packageScanResults.getPackageName() + "." + className + ".xml";
+            writeClassReport(new File(reportsDir, fileName), packageScanResults.getClassResults(className));
+        }
+    }
+
+    /**
+     * Write a single report containing every class in the scan results.
+     * @param file File to write
+     * @param scanResults Results to write
+     * @throws IOException If the report cannot be written
+     */
+    public void writeAggregateReport(final File file, final AnnotationScanResults scanResults) throws IOException {
+        final OutputStream out = new BufferedOutputStream(new FileOutputStream(file), BUFFER_SIZE);
+        try {
+            final XMLStreamWriter writer = factory.createXMLStreamWriter(out, ENCODING);
+            writer.writeStartDocument(ENCODING, "1.0");
+            writer.writeStartElement("knownDefects");
+            writeClasses(writer, scanResults);
+            writer.writeEndElement();
+            writer.writeEndDocument();
+            writer.close();
+        } catch (XMLStreamException e) {
+            throw new IOException("Failed to write report " + file, e);
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Write a single report of the differences between two scans.
+     * @param file File to write
+     * @param diff Differences to write
+     * @throws IOException If the report cannot be written
+     */
+    public void writeDiffReport(final File file, final ScanDiff diff) throws IOException {
+        final OutputStream out = new BufferedOutputStream(new FileOutputStream(file), BUFFER_SIZE);
+        try {
+            final XMLStreamWriter writer = factory.createXMLStreamWriter(out, ENCODING);
+            writer.writeStartDocument(ENCODING, "1.0");
+            writer.writeStartElement("knownDefectsDiff");
+            writer.writeStartElement("added");
+            writeClasses(writer, diff.getAdded());
+            writer.writeEndElement();
+            writer.writeStartElement("removed");
+            writeClasses(writer, diff.getRemoved());
+            writer.writeEndElement();
+            writer.writeStartElement("changed");
+            writer.writeStartElement("before");
+            writeClasses(writer, diff.getChangedBefore());
+            writer.writeEndElement();
+            writer.writeStartElement("after");
+            writeClasses(writer, diff.getChangedAfter());
+            writer.writeEndElement();
+            writer.writeEndElement();
+            writer.writeEndElement();
+            writer.writeEndDocument();
+            writer.close();
+        } catch (XMLStreamException e) {
+            throw new IOException("Failed to write report " + file, e);
+        } finally {
+            out.close();
+        }
+    }
+
+    private void writeClasses(final XMLStreamWriter writer, final AnnotationScanResults scanResults) throws XMLStreamException {
+        for (final PackageScanResults packageScanResults : scanResults.getAllResults()) {
+            for (final String className : packageScanResults.getClassNames()) {
+                writeClass(writer, packageScanResults.getClassResults(className));
+            }
+        }
+    }
+
+    /**
+     * Write the <code>annotationResults</code> element for a class.
+     * @param writer Writer to write to
+     * @param classResults Annotations found in the class
+     * @throws XMLStreamException If the element cannot be written
+     */
+    void writeClass(final XMLStreamWriter writer, final ClassAnnotation classResults) throws XMLStreamException {
+        writer.writeStartElement("annotationResults");
+
+        writer.writeStartElement("package");
+        writer.writeCharacters(classResults.getPackageName());
+        writer.writeEndElement();
+
+        writer.writeStartElement("className");
+        writer.writeCharacters(classResults.getClassName());
+        writer.writeEndElement();
+
+        for (final AnnotationInformation information : classResults.getAnnotations()) {
+            writer.writeStartElement("annotation");
+            writer.writeAttribute("type", information.getAnnotationName());
+            writer.writeAttribute("method", information.getMethodName());
+
+            writer.writeStartElement("properties");
+            for (final String methodName : information.getMethodNames()) {
+                writer.writeEmptyElement("property");
+                writer.writeAttribute("name", methodName);
+                writer.writeAttribute("value", information.getMethodValue(methodName));
+            }
+            writer.writeEndElement();
+
+            writer.writeEndElement();
+        }
+
+        writer.writeEndElement();
+    }
+}
@@ -0,0 +1,5 @@
+/**
+ * Writers for the machine readable report output.
+ * @since 1.1
+ */
+package com.megatome.knowndefects.report;
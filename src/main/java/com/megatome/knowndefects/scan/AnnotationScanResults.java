@@ -22,16 +22,30 @@ import java.util.*;
 
 /**
  * Holds the results of a annotation scan.
+ * <p>While a scan is running, results are added to hash maps and the number of classes with each annotation
+ * type is kept as a running count, so the <code>has</code> and <code>count</code> queries do not visit every
+ * package. Once all results are in, {@link #freeze()} sorts every package, class and annotation a single time
+ * and the results become immutable, so rendering can read them repeatedly without copying or sorting.</p>
  */
 public class AnnotationScanResults {
-    private final Map<String, PackageScanResults> results = new TreeMap<String, PackageScanResults>();
+    private final Map<String, PackageScanResults> results = new HashMap<String, PackageScanResults>();
+    private int knownDefectCount;
+    private int knownAcceptedDefectCount;
+
+    private List<PackageScanResults> frozenResults;
+    private Map<String, List<ClassAnnotation>> frozenKnownDefectResults;
+    private Map<String, List<ClassAnnotation>> frozenKnownAcceptedDefectResults;
+    // Written last when freezing, so reading it publishes the frozen results without taking the lock
+    private volatile boolean frozen = false;
 
     /**
      * Add a result
      * @param className Name of the class the result was found in
      * @param info Result to add
+     * @throws IllegalStateException If the results are frozen
      */
     public void addResult(final String className, final AnnotationInformation info) {
+        checkNotFrozen();
         if (null == info) return;
 
         addToResults(className, info);
@@ -39,8 +53,8 @@ public class AnnotationScanResults {
 
     private void addToResults(final String fullClassName, final AnnotationInformation info) {
         int idx = fullClassName.lastIndexOf(".");
-        final String packageName = fullClassName.substring(0, idx);
-        final String className = fullClassName.substring(idx+1);
+        final String packageName = fullClassName.substring(0, idx).intern();
+        final String className = fullClassName.substring(idx+1).intern();
         addToResults(packageName, className, info);
     }
 
@@ -48,28 +62,95 @@ public class AnnotationScanResults {
         PackageScanResults packageScanResults = results.get(packageName);
         if (null == packageScanResults) {
             packageScanResults = new PackageScanResults(packageName);
+            results.put(packageName, packageScanResults);
         }
+        final int kdBefore = packageScanResults.getKnownDefectResultsCount();
+        final int kadBefore = packageScanResults.getKnownAcceptedDefectResultsCount();
         packageScanResults.addResult(className, info);
-        results.put(packageName, packageScanResults);
+        knownDefectCount += packageScanResults.getKnownDefectResultsCount() - kdBefore;
+        knownAcceptedDefectCount += packageScanResults.getKnownAcceptedDefectResultsCount() - kadBefore;
     }
 
+    /**
+     * Add all of the results from another scan. The results are copied, so later changes to the source do not
+     * affect these results.
+     * @param mergeSource Results to add
+     * @throws IllegalStateException If the results are frozen
+     */
     public void merge(final AnnotationScanResults mergeSource) {
-        for (final PackageScanResults packageScanResults : mergeSource.getAllResults()) {
-            if (results.containsKey(packageScanResults.getPackageName())) {
-                results.get(packageScanResults.getPackageName()).merge(packageScanResults);
-            } else {
-                results.put(packageScanResults.getPackageName(), packageScanResults);
+        checkNotFrozen();
+        for (final PackageScanResults packageScanResults : mergeSource.results.values()) {
+            PackageScanResults existing = results.get(packageScanResults.getPackageName());
+            if (null == existing) {
+                existing = new PackageScanResults(packageScanResults.getPackageName());
+                results.put(existing.getPackageName(), existing);
             }
+            final int kdBefore = existing.getKnownDefectResultsCount();
+            final int kadBefore = existing.getKnownAcceptedDefectResultsCount();
+            existing.merge(packageScanResults);
+            knownDefectCount += existing.getKnownDefectResultsCount() - kdBefore;
+            knownAcceptedDefectCount += existing.getKnownAcceptedDefectResultsCount() - kadBefore;
         }
     }
 
-    public List<PackageScanResults> getAllResults() {
+    /**
+     * Sort the results and make them immutable. Calling this more than once has no further effect.
+     * @return These results
+     */
+    public synchronized AnnotationScanResults freeze() {
+        if (isFrozen()) {
+            return this;
+        }
+        final List<PackageScanResults> allResults = sortedResults();
+        final Map<String, List<ClassAnnotation>> kdResults = new LinkedHashMap<String, List<ClassAnnotation>>();
+        final Map<String, List<ClassAnnotation>> kadResults = new LinkedHashMap<String, List<ClassAnnotation>>();
+        for (final PackageScanResults packageScanResults : allResults) {
+            packageScanResults.freeze();
+            if (packageScanResults.hasKnownDefectResults()) {
+                kdResults.put(packageScanResults.getPackageName(), packageScanResults.getKnownDefectResults());
+            }
+            if (packageScanResults.hasKnownAcceptedDefectResults()) {
+                kadResults.put(packageScanResults.getPackageName(), packageScanResults.getKnownAcceptedDefectResults());
+            }
+        }
+        frozenKnownDefectResults = Collections.unmodifiableMap(kdResults);
+        frozenKnownAcceptedDefectResults = Collections.unmodifiableMap(kadResults);
+        frozenResults = Collections.unmodifiableList(allResults);
+        frozen = true;
+        return this;
+    }
+
+    public boolean isFrozen() {
+        return frozen;
+    }
+
+    private void checkNotFrozen() {
+        if (isFrozen()) {
+            throw new IllegalStateException("Scan results are frozen");
+        }
+    }
+
+    private List<PackageScanResults> sortedResults() {
         final List<PackageScanResults> allResults = new ArrayList<PackageScanResults>(results.values());
         Collections.sort(allResults);
         return allResults;
     }
 
+    /**
+     * Get the results for every package.
+     * @return Results sorted by package name. Unmodifiable once frozen, otherwise a sorted copy.
+     */
+    public List<PackageScanResults> getAllResults() {
+        if (isFrozen()) {
+            return frozenResults;
+        }
+        return sortedResults();
+    }
+
     public Map<String, List<ClassAnnotation>> getKnownDefectResults() {
+        if (isFrozen()) {
+            return frozenKnownDefectResults;
+        }
         final Map<String, List<ClassAnnotation>> knownDefectResults = new TreeMap<String , List<ClassAnnotation>>();
         for (final Map.Entry<String, PackageScanResults> entry : results.entrySet()) {
             if (entry.getValue().hasKnownDefectResults()) {
@@ -80,6 +161,9 @@ public class AnnotationScanResults {
     }
 
     public Map<String, List<ClassAnnotation>> getKnownAcceptedDefectResults() {
+        if (isFrozen()) {
+            return frozenKnownAcceptedDefectResults;
+        }
         final Map<String, List<ClassAnnotation>> knownAcceptedDefectResults = new TreeMap<String , List<ClassAnnotation>>();
         for (final Map.Entry<String, PackageScanResults> entry : results.entrySet()) {
             if (entry.getValue().hasKnownAcceptedDefectResults()) {
@@ -90,44 +174,30 @@ public class AnnotationScanResults {
     }
 
     public boolean hasKnownDefectResults() {
-        for (final Map.Entry<String, PackageScanResults> entry : results.entrySet()) {
-            if (entry.getValue().hasKnownDefectResults()) {
-                return true;
-            }
-        }
-        return false;
+        return knownDefectCount > 0;
     }
 
     public boolean hasKnownAcceptedDefectResults() {
-        for (final Map.Entry<String, PackageScanResults> entry : results.entrySet()) {
-            if (entry.getValue().hasKnownAcceptedDefectResults()) {
-                return true;
-            }
-        }
-        return false;
+        return knownAcceptedDefectCount > 0;
     }
 
     public boolean hasResults() {
         return (hasKnownDefectResults() || hasKnownAcceptedDefectResults());
     }
 
+    /**
+     * Get the number of classes with KnownDefect annotations.
+     * @return Class count
+     */
     public int getKnownDefectResultsCount() {
-        int count = 0;
-        for (final PackageScanResults packageScanResults : results.values()) {
-            if (packageScanResults.hasKnownDefectResults()) {
-                count += packageScanResults.getKnownDefectResultsCount();
-            }
-        }
-        return count;
+        return knownDefectCount;
     }
 
+    /**
+     * Get the number of classes with KnownAndAcceptedDefect annotations.
+     * @return Class count
+     */
     public int getKnownAcceptedDefectResultsCount() {
-        int count = 0;
-        for (final PackageScanResults packageScanResults : results.values()) {
-            if (packageScanResults.hasKnownAcceptedDefectResults()) {
-                count += packageScanResults.getKnownAcceptedDefectResultsCount();
-            }
-        }
-        return count;
+        return knownAcceptedDefectCount;
     }
 }
@@ -21,131 +21,406 @@ package com.megatome.knowndefects.scan;
 
 
 import com.megatome.knowndefects.info.AnnotationInformation;
-import com.megatome.knowndefects.info.AnnotationInformationFactory;
-import javassist.bytecode.AnnotationsAttribute;
-import javassist.bytecode.ClassFile;
-import javassist.bytecode.MethodInfo;
-import javassist.bytecode.annotation.Annotation;
 
 import java.io.*;
 import java.util.*;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 import static com.megatome.knowndefects.Constants.KNOWN_ACCEPTED_DEFECT_ANNOTATION_CLASS;
 import static com.megatome.knowndefects.Constants.KNOWN_DEFECT_ANNOTATION_CLASS;
 
 /**
  * Responsible for scanning archives to find the KD annotations.
+ * <p>Scanners are created with a {@link Builder} and are immutable, so a single scanner can be shared between
+ * threads. Each scan returns its own results.</p>
+ * <pre>
+ * final AnnotationScanner scanner = AnnotationScanner.builder().threads(4).build();
+ * final AnnotationScanResults results = scanner.scan("target/test-classes");
+ * </pre>
  * <p>Code in this class borrowed and adapted from the Scannotation library
  * available from <a href="http://scannotation.sourceforge.net/">http://scannotation.sourceforge.net/</a></p>
  */
 public class AnnotationScanner {
-    private static final Pattern QUOTE_PATTERN = Pattern.compile("^\"(.*)\"$", Pattern.DOTALL);
-    private static final AnnotationScanResults results = new AnnotationScanResults();
-    private static final List<String> ignoredPackages = new ArrayList<String>(Arrays.asList("javax", "java", "sun", "com.sun", "javassist"));
-    private static final Set<String> classTypes = new HashSet<String>(Arrays.asList(KNOWN_DEFECT_ANNOTATION_CLASS, KNOWN_ACCEPTED_DEFECT_ANNOTATION_CLASS));
+    private static final List<String> DEFAULT_IGNORED_PACKAGES = Collections.unmodifiableList(Arrays.asList("javax", "java", "sun", "com.sun", "javassist"));
+    private static final Set<String> SUPPORTED_TYPES = Collections.unmodifiableSet(new HashSet<String>(Arrays.asList(KNOWN_DEFECT_ANNOTATION_CLASS, KNOWN_ACCEPTED_DEFECT_ANNOTATION_CLASS)));
 
-    private AnnotationScanner() {}
+    private final PackageMatcher packages;
+    private final Set<String> classTypes;
+    private final Filter userFilter;
+    private final int threads;
+    private final ScanCache cache;
+    private final ConstantPoolFilter constantPoolFilter;
+    private final ClassParser parser;
+
+    private AnnotationScanner(final Builder builder) {
+        this.packages = PackageMatcher.compile(builder.includedPackages, builder.ignoredPackages);
+        this.classTypes = Collections.unmodifiableSet(new HashSet<String>(builder.annotationTypes));
+        this.userFilter = builder.filter;
+        this.threads = (builder.threads < 1) ? Runtime.getRuntime().availableProcessors() : builder.threads;
+        this.cache = builder.cache;
+        this.constantPoolFilter = new ConstantPoolFilter(classTypes);
+        this.parser = builder.parserType.createParser(classTypes);
+        if (null != cache) {
+            final List<String> sortedTypes = new ArrayList<String>(classTypes);
+            Collections.sort(sortedTypes);
+            cache.configure(builder.parserType.name() + ' ' + sortedTypes);
+        }
+    }
+
+    /**
+     * Create a builder for a scanner. By default the scanner looks for both KD annotations, ignores the JDK
+     * packages, scans on the calling thread with the javassist parser and does not use a cache.
+     * @return New builder
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
 
     /**
      * Scan the classes found at the base path for the KD annotations. Recurses through subdirectories.
+     * The base path may also be a jar or zip archive, in which case the archive entries are scanned.
      * @param basePath Path to begin the scan at
      * @return Object containing all found annotation results
      * @throws AnnotationScanException If an error occurs
      */
     public static AnnotationScanResults findAnnotationsInPath(final String basePath) throws AnnotationScanException {
+        return findAnnotationsInPath(basePath, 1);
+    }
+
+    /**
+     * Scan the classes found at the base path for the KD annotations, spreading the work across multiple threads.
+     * Recurses through subdirectories. The results are identical to a single threaded scan.
+     * @param basePath Path to begin the scan at
+     * @param threads Number of threads to scan with. A value less than 1 uses the number of available processors,
+     *                and a value of 1 scans on the calling thread.
+     * @return Object containing all found annotation results
+     * @throws AnnotationScanException If an error occurs
+     */
+    public static AnnotationScanResults findAnnotationsInPath(final String basePath, final int threads) throws AnnotationScanException {
+        return builder().threads(threads).build().scan(basePath);
+    }
+
+    /**
+     * Scan the classes contained in a number of jar or zip archives for the KD annotations.
+     * @param archivePaths Paths of the archives to scan
+     * @return Object containing all found annotation results
+     * @throws AnnotationScanException If an error occurs
+     */
+    public static AnnotationScanResults findAnnotationsInArchives(final List<String> archivePaths) throws AnnotationScanException {
+        return builder().build().scanArchives(archivePaths);
+    }
+
+    /**
+     * Scan the classes found at the base path. Recurses through subdirectories. The base path may also be a jar
+     * or zip archive, in which case the archive entries are scanned. Class files in a directory that have not
+     * changed since the cached scan are not parsed again.
+     * @param basePath Path to begin the scan at
+     * @return Object containing all found annotation results
+     * @throws AnnotationScanException If an error occurs
+     */
+    public AnnotationScanResults scan(final String basePath) throws AnnotationScanException {
+        return scan(basePath, new ScanMetrics());
+    }
+
+    /**
+     * Scan the classes found at the base path, recording counts and the time spent in each stage of the scan.
+     * <p>With more than one thread, reading class files, parsing them and collecting the results run as
+     * separate stages, so the time spent waiting on the file system overlaps with parsing.</p>
+     * @param basePath Path to begin the scan at
+     * @param metrics Metrics to add the counts and stage times to
+     * @return Object containing all found annotation results
+     * @throws AnnotationScanException If an error occurs
+     * @see #scan(String)
+     */
+    public AnnotationScanResults scan(final String basePath, final ScanMetrics metrics) throws AnnotationScanException {
         if ((null == basePath) || (basePath.isEmpty())) {
             throw new IllegalArgumentException("Base path cannot be null");
         }
+        final File base = new File(basePath);
         try {
-            scanArchives(new File(basePath));
+            final ClassSource source;
+            if (JarIterator.isArchive(base)) {
+                source = ClassSource.forStreams(new JarIterator(base, createFilter(metrics, true)));
+            } else {
+                final FileIterator it = new FileIterator(base, createFilter(metrics, false), packages, metrics);
+                source = ClassSource.forFiles(it, cache);
+            }
+            return scan(source, metrics);
         } catch (IOException e) {
             throw new AnnotationScanException("Error scanning for annotations", e);
         }
+    }
 
-        return results;
+    /**
+     * Scan the classes contained in a number of jar or zip archives. Archives are not cached.
+     * @param archivePaths Paths of the archives to scan
+     * @return Object containing all found annotation results
+     * @throws AnnotationScanException If an error occurs
+     */
+    public AnnotationScanResults scanArchives(final List<String> archivePaths) throws AnnotationScanException {
+        return scanArchives(archivePaths, new ScanMetrics());
     }
 
-    private static void scanArchives(final File f) throws IOException, AnnotationScanException {
-        final Filter filter = new Filter() {
-            public boolean accepts(String filename) {
-                if (filename.endsWith(".class")) {
-                    if (filename.startsWith("/")) filename = filename.substring(1);
-                    if (!ignoreScan(filename.replace('/', '.'))) {
-                        return true;
-                    }
-                }
+    /**
+     * Scan the classes contained in a number of jar or zip archives, recording counts and the time spent in each
+     * stage of the scan. The archives are opened and read one after another, but with more than one thread the classes
+     * are parsed in parallel.
+     * @param archivePaths Paths of the archives to scan
+     * @param metrics Metrics to add the counts and stage times to
+     * @return Object containing all found annotation results
+     * @throws AnnotationScanException If an error occurs
+     */
+    public AnnotationScanResults scanArchives(final List<String> archivePaths, final ScanMetrics metrics) throws AnnotationScanException {
+        if (null == archivePaths) {
+            throw new IllegalArgumentException("Archive paths cannot be null");
+        }
+        try {
+            final List<StreamIterator> iterators = new ArrayList<StreamIterator>();
+            for (final String archivePath : archivePaths) {
+                iterators.add(new JarIterator(new File(archivePath), createFilter(metrics, true)));
+            }
+            return scan(ClassSource.forStreams(new CompositeIterator(iterators)), metrics);
+        } catch (IOException e) {
+            throw new AnnotationScanException("Error scanning for annotations", e);
+        }
+    }
 
-                return false;
+    /**
+     * Create the filter for the files of a scan.
+     * @param metrics Metrics to count visited files in
+     * @param checkPackage True to check the package of archive entries. Directory walks check the package of each
+     *                     directory as it is entered, so the absolute file paths are not checked again.
+     * @return Created filter
+     */
+    private Filter createFilter(final ScanMetrics metrics, final boolean checkPackage) {
+        return new Filter() {
+            public boolean accepts(final String filename) {
+                final boolean accepted = acceptsClass(filename, checkPackage);
+                metrics.addVisited(accepted);
+                return accepted;
             }
         };
-        final StreamIterator it = new FileIterator(f, filter);
-        InputStream stream;
-        while ((stream = it.next()) != null) scanClass(stream);
     }
 
-    private static boolean ignoreScan(String intf) {
-        for (final String ignored : ignoredPackages) {
-            if (intf.startsWith(ignored + ".")) {
-                return true;
-            }
+    private boolean acceptsClass(final String filename, final boolean checkPackage) {
+        if ((null != userFilter) && !userFilter.accepts(filename)) {
+            return false;
         }
-        return false;
+        return filename.endsWith(".class") && (!checkPackage || packages.acceptsPath(filename));
     }
 
-    private static void scanClass(InputStream bits)
-            throws IOException {
-        final DataInputStream dstream = new DataInputStream(new BufferedInputStream(bits));
+    private AnnotationScanResults scan(final ClassSource source, final ScanMetrics metrics) throws IOException, AnnotationScanException {
+        final AnnotationScanResults results = new AnnotationScanResults();
+        if (threads > 1) {
+            new ScanPipeline(this, threads, cache, metrics).run(source, results);
+            return results;
+        }
+
         try {
-            final ClassFile cf = new ClassFile(dstream);
-            scanMethods(cf);
+            scanSequential(source, results, metrics);
         } finally {
-            dstream.close();
-            bits.close();
+            source.close();
         }
+        return results;
     }
 
-    private static void scanMethods(ClassFile cf) {
-        final List methods = cf.getMethods();
-        if (methods == null) {
-            return;
+    private void scanSequential(final ClassSource source, final AnnotationScanResults results, final ScanMetrics metrics) throws IOException, AnnotationScanException {
+        long start = System.nanoTime();
+        ClassSource.ClassData data;
+        while ((data = source.next()) != null) {
+            metrics.addRead(System.nanoTime() - start, data.length);
+            List<AnnotationInformation> found = data.cached;
+            if (null == found) {
+                final long parseStart = System.nanoTime();
+                found = scanClass(data.bytes, data.length, metrics);
+                if ((null != cache) && (null != data.file)) {
+                    cache.put(data.file, data.checksum, found);
+                }
+                metrics.addParseTime(System.nanoTime() - parseStart);
+            }
+            final long aggregateStart = System.nanoTime();
+            addResults(results, found);
+            metrics.addAggregate(System.nanoTime() - aggregateStart, found.size());
+            start = System.nanoTime();
         }
-        for (final Object obj : methods) {
-            final MethodInfo method = (MethodInfo) obj;
+    }
 
-            final AnnotationsAttribute visible = (AnnotationsAttribute) method.getAttribute(AnnotationsAttribute.visibleTag);
-            final AnnotationsAttribute invisible = (AnnotationsAttribute) method.getAttribute(AnnotationsAttribute.invisibleTag);
+    /**
+     * Find the annotations in a single class file.
+     * @param bytes Buffer holding the class file
+     * @param length Number of valid bytes in the buffer
+     * @param metrics Metrics to count prefiltered and parsed classes, annotated methods and line number lookups in
+     * @return Found annotations. Will be empty if none found.
+     * @throws IOException If the class file cannot be parsed
+     */
+    List<AnnotationInformation> scanClass(final byte[] bytes, final int length, final ScanMetrics metrics) throws IOException {
+        if (!prefilter(bytes, length, metrics)) {
+            return Collections.emptyList();
+        }
+        return parseClass(bytes, length, metrics);
+    }
 
-            if (visible != null) populate(visible.getAnnotations(), method.getName(), method.getLineNumber(0), cf.getName());
-            if (invisible != null) populate(invisible.getAnnotations(), method.getName(), method.getLineNumber(0), cf.getName());
+    /**
+     * Check whether a class file can contain any of the scanned annotations without parsing it.
+     * @param bytes Buffer holding the class file
+     * @param length Number of valid bytes in the buffer
+     * @param metrics Metrics to count rejected classes in
+     * @return True if the class needs to be parsed
+     */
+    boolean prefilter(final byte[] bytes, final int length, final ScanMetrics metrics) {
+        if (constantPoolFilter.accepts(bytes, length)) {
+            return true;
         }
+        metrics.addPrefiltered();
+        return false;
+    }
 
+    /**
+     * Find the annotations in a class file that passed the {@link #prefilter(byte[], int, ScanMetrics)}.
+     * @param bytes Buffer holding the class file
+     * @param length Number of valid bytes in the buffer
+     * @param metrics Metrics to count parsed classes, annotated methods and line number lookups in
+     * @return Found annotations. Will be empty if none found.
+     * @throws IOException If the class file cannot be parsed
+     */
+    List<AnnotationInformation> parseClass(final byte[] bytes, final int length, final ScanMetrics metrics) throws IOException {
+        metrics.addParsed();
+        return parser.parse(bytes, length, metrics);
     }
 
-    private static void populate(Annotation[] annotations, String methodName, int lineNumber, String className) {
-        if (annotations == null) return;
-        for (final Annotation ann : annotations) {
-            final String annotationClass = ann.getTypeName();
-            if (classTypes.contains(annotationClass)) {
-                final AnnotationInformation info = AnnotationInformationFactory.createInformation(annotationClass);
-                info.setClassName(className);
-                info.setMethodName(methodName);
-                info.setLineNumber(lineNumber);
-                final Set memberNames = ann.getMemberNames();
-                if (null != memberNames) {
-                    for (final Object obj : memberNames) {
-                        final String mName = (String)obj;
-                        String value = ann.getMemberValue(mName).toString();
-                        final Matcher m = QUOTE_PATTERN.matcher(value);
-                        if (m.matches()) {
-                            value = m.group(1);
-                        }
-                        info.setMethodValue(mName, value);
-                    }
+    static void addResults(final AnnotationScanResults scanResults, final List<AnnotationInformation> found) {
+        for (final AnnotationInformation info : found) {
+            scanResults.addResult(info.getClassName(), info);
+        }
+    }
+
+    /**
+     * Builder for {@link AnnotationScanner} instances. Builders are not thread safe, but the scanners they
+     * build are.
+     */
+    public static class Builder {
+        private final List<String> ignoredPackages = new ArrayList<String>(DEFAULT_IGNORED_PACKAGES);
+        private final List<String> includedPackages = new ArrayList<String>();
+        private final Set<String> annotationTypes = new HashSet<String>(SUPPORTED_TYPES);
+        private Filter filter = null;
+        private int threads = 1;
+        private ScanCache cache = null;
+        private ClassParserType parserType = ClassParserType.JAVASSIST;
+
+        private Builder() {}
+
+        /**
+         * Set the number of threads to scan with.
+         * @param threads Number of threads. A value less than 1 uses the number of available processors, and a
+         *                value of 1 scans on the calling thread.
+         * @return This builder
+         */
+        public Builder threads(final int threads) {
+            this.threads = threads;
+            return this;
+        }
+
+        /**
+         * Replace the packages that are never scanned. Subpackages are ignored too, and a "*" matches any single
+         * package name. Ignored packages take precedence over included packages.
+         * @param packages Ignored package names, i.e. "java"
+         * @return This builder
+         */
+        public Builder ignoredPackages(final Collection<String> packages) {
+            ignoredPackages.clear();
+            ignoredPackages.addAll(packages);
+            return this;
+        }
+
+        /**
+         * Add a package that is never scanned. Subpackages are ignored too.
+         * @param packageName Ignored package name
+         * @return This builder
+         */
+        public Builder ignorePackage(final String packageName) {
+            ignoredPackages.add(packageName);
+            return this;
+        }
+
+        /**
+         * Restrict the scan to the given packages. Subpackages are included too, and a "*" matches any single
+         * package name. Directories outside of the included packages are not walked.
+         * @param packages Included package names, i.e. "com.example". Empty to scan every package.
+         * @return This builder
+         */
+        public Builder includedPackages(final Collection<String> packages) {
+            includedPackages.clear();
+            includedPackages.addAll(packages);
+            return this;
+        }
+
+        /**
+         * Add a package to restrict the scan to. Subpackages are included too.
+         * @param packageName Included package name
+         * @return This builder
+         */
+        public Builder includePackage(final String packageName) {
+            includedPackages.add(packageName);
+            return this;
+        }
+
+        /**
+         * Restrict the annotations that are looked for.
+         * @param types Fully qualified annotation class names. Each must be one of the KD annotations.
+         * @return This builder
+         */
+        public Builder annotationTypes(final Collection<String> types) {
+            for (final String type : types) {
+                if (!SUPPORTED_TYPES.contains(type)) {
+                    throw new IllegalArgumentException("Unsupported annotation type " + type);
                 }
-                results.addResult(className, info);
             }
+            annotationTypes.clear();
+            annotationTypes.addAll(types);
+            return this;
+        }
+
+        /**
+         * Set an additional filter that file paths and archive entry names must be accepted by.
+         * @param filter Filter. May be null for none.
+         * @return This builder
+         */
+        public Builder filter(final Filter filter) {
+            this.filter = filter;
+            return this;
+        }
+
+        /**
+         * Set a cache of previous scan results. The cache is updated by every scan of a directory. Results cached
+         * with a different parser or different annotation types are discarded when the scanner is built.
+         * @param cache Cache. May be null for none.
+         * @return This builder
+         */
+        public Builder cache(final ScanCache cache) {
+            this.cache = cache;
+            return this;
+        }
+
+        /**
+         * Set the parser used to find the annotations in each class file.
+         * @param parserType Parser type
+         * @return This builder
+         */
+        public Builder parser(final ClassParserType parserType) {
+            if (null == parserType) {
+                throw new IllegalArgumentException("Parser type cannot be null");
+            }
+            this.parserType = parserType;
+            return this;
+        }
+
+        /**
+         * Build the scanner.
+         * @return New scanner
+         * @throws IllegalArgumentException If a package pattern is not valid
+         * @throws IllegalStateException If the cache is already used by a scanner with a different configuration
+         */
+        public AnnotationScanner build() {
+            return new AnnotationScanner(this);
         }
     }
 }
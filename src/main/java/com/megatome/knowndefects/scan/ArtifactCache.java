@@ -0,0 +1,80 @@
+/*******************************************************************************
+ * Copyright (c) 2011-2013 Megatome Technologies
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.megatome.knowndefects.scan;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Persistent cache of the annotations found in whole artifacts, such as released <code>-tests.jar</code>
+ * dependencies. Released artifacts never change, so each one only needs to be scanned once. Entries are kept
+ * below a base directory, laid out by group, artifact and version like a Maven repository.
+ */
+public class ArtifactCache {
+    private final File baseDir;
+
+    /**
+     * @param baseDir Directory the cache entries are kept in
+     */
+    public ArtifactCache(final File baseDir) {
+        this.baseDir = baseDir;
+    }
+
+    /**
+     * Get the cached results for an artifact.
+     * @param groupId Group id
+     * @param artifactId Artifact id
+     * @param version Version
+     * @param classifier Classifier. May be null.
+     * @return Cached results, or null if the artifact has not been cached or the entry cannot be read
+     */
+    public AnnotationScanResults get(final String groupId, final String artifactId, final String version, final String classifier) {
+        final File entry = getEntryFile(groupId, artifactId, version, classifier);
+        if (!entry.isFile()) {
+            return null;
+        }
+        try {
+            return ScanSnapshot.read(entry);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Store the results for an artifact.
+     * @param groupId Group id
+     * @param artifactId Artifact id
+     * @param version Version
+     * @param classifier Classifier. May be null.
+     * @param results Results found in the artifact
+     * @throws IOException If the entry cannot be written
+     */
+    public void put(final String groupId, final String artifactId, final String version, final String classifier,
+                    final AnnotationScanResults results) throws IOException {
+        ScanSnapshot.write(getEntryFile(groupId, artifactId, version, classifier), results);
+    }
+
+    File getEntryFile(final String groupId, final String artifactId, final String version, final String classifier) {
+        final StringBuilder name = new StringBuilder(artifactId).append('-').append(version);
+        if ((null != classifier) && !classifier.isEmpty()) {
+            name.append('-').append(classifier);
+        }
+        name.append(".kdcache");
+        final File dir = new File(new File(new File(baseDir, groupId.replace('.', File.separatorChar)), artifactId), version);
+        return new File(dir, name.toString());
+    }
+}
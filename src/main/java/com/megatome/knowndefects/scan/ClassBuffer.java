@@ -0,0 +1,102 @@
+/*******************************************************************************
+ * Copyright (c) 2011-2013 Megatome Technologies
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.megatome.knowndefects.scan;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Reusable buffer holding the bytes of one class file at a time. Files are read through a
+ * <code>FileChannel</code> straight into the buffer, which only grows when a larger class is encountered.
+ * Instances are not thread safe and should be confined to a single thread.
+ */
+class ClassBuffer {
+    private static final int INITIAL_SIZE = 16 * 1024;
+
+    private byte[] bytes = new byte[INITIAL_SIZE];
+    private int length = 0;
+
+    /**
+     * Replace the buffer contents with a class file.
+     * @param file File to read
+     * @throws IOException If the file cannot be read
+     */
+    void read(final File file) throws IOException {
+        final FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            final long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Class file is too large: " + file);
+            }
+            ensureCapacity((int) size);
+            final ByteBuffer target = ByteBuffer.wrap(bytes, 0, (int) size);
+            while (target.hasRemaining() && (channel.read(target) != -1)) {
+                // keep reading until the file is consumed
+            }
+            length = target.position();
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Replace the buffer contents with everything remaining in a stream. The stream is not closed.
+     * @param in Stream to read
+     * @throws IOException If the stream cannot be read
+     */
+    void read(final InputStream in) throws IOException {
+        length = 0;
+        int read;
+        while ((read = in.read(bytes, length, bytes.length - length)) != -1) {
+            length += read;
+            if (length == bytes.length) {
+                ensureCapacity(bytes.length * 2);
+            }
+        }
+    }
+
+    byte[] getBytes() {
+        return bytes;
+    }
+
+    int getLength() {
+        return length;
+    }
+
+    /**
+     * Calculate a checksum of the current contents.
+     * @return CRC-32 of the buffer contents
+     */
+    long checksum() {
+        final CRC32 crc = new CRC32();
+        crc.update(bytes, 0, length);
+        return crc.getValue();
+    }
+
+    private void ensureCapacity(final int capacity) {
+        if (capacity > bytes.length) {
+            final byte[] grown = new byte[Math.max(capacity, bytes.length * 2)];
+            System.arraycopy(bytes, 0, grown, 0, length);
+            bytes = grown;
+        }
+    }
+}
@@ -0,0 +1,43 @@
+/*******************************************************************************
+ * Copyright (c) 2011-2013 Megatome Technologies
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.megatome.knowndefects.scan;
+
+import com.megatome.knowndefects.info.AnnotationInformation;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Finds the KD annotations on the methods of a single class file. Parsers are created for a fixed set of
+ * annotation types by a {@link ClassParserType} and must be thread safe.
+ * <p>Line numbers are only looked up for methods that carry one of the annotations, since decoding the line
+ * number table of every annotated test method dominates the parse time of large test trees.</p>
+ * <p>Member values are extracted by their type: strings as they are, enum constants by name, classes by their
+ * class name, arrays as their elements separated by ", " and nested annotations as <code>@Type(name=value)</code>.
+ * Other primitive values use their Java string form.</p>
+ */
+interface ClassParser {
+    /**
+     * Find the annotations in a class file.
+     * @param bytes Buffer holding the class file
+     * @param length Number of valid bytes in the buffer
+     * @param metrics Metrics to count annotated methods and line number lookups in
+     * @return Found annotations. Will be empty if none found.
+     * @throws IOException If the class file cannot be parsed
+     */
+    List<AnnotationInformation> parse(byte[] bytes, int length, ScanMetrics metrics) throws IOException;
+}
@@ -0,0 +1,47 @@
+/*******************************************************************************
+ * Copyright (c) 2011-2013 Megatome Technologies
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.megatome.knowndefects.scan;
+
+import java.util.Set;
+
+/**
+ * The class file parsers a scanner can use. Both find the same annotations; they differ in how much of each
+ * class file they read.
+ */
+public enum ClassParserType {
+    /**
+     * Parse each class file with javassist, which reads every attribute of every method.
+     */
+    JAVASSIST {
+        @Override
+        ClassParser createParser(final Set<String> annotationTypes) {
+            return new JavassistClassParser(annotationTypes);
+        }
+    },
+    /**
+     * Read only the method annotations, skipping the code of every method. The line number table is only
+     * read for methods that carry one of the annotations.
+     */
+    SKIP_CODE {
+        @Override
+        ClassParser createParser(final Set<String> annotationTypes) {
+            return new SkipCodeClassParser(annotationTypes);
+        }
+    };
+
+    abstract ClassParser createParser(Set<String> annotationTypes);
+}
@@ -0,0 +1,155 @@
+/*******************************************************************************
+ * Copyright (c) 2011-2013 Megatome Technologies
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.megatome.knowndefects.scan;
+
+import com.megatome.knowndefects.info.AnnotationInformation;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+/**
+ * First stage of a scan: produces the bytes of each class file to be parsed, or the cached annotations for
+ * class files that have not changed. Every class is read into the same reusable buffer, so the bytes of a class
+ * are only valid until the next class is requested; use {@link ClassData#copy()} to keep them longer. Sources
+ * are not thread safe and must be read and closed from a single thread.
+ */
+abstract class ClassSource implements Closeable {
+    protected final ClassBuffer buffer = new ClassBuffer();
+
+    /**
+     * Get the next class.
+     * @return Next class, or null if there are no more classes. Its bytes are overwritten by the next call.
+     * @throws IOException If a class cannot be read
+     * @throws AnnotationScanException If the underlying iterator fails
+     */
+    abstract ClassData next() throws IOException, AnnotationScanException;
+
+    /**
+     * Release the files or directories the source holds open. Does nothing by default.
+     * @throws IOException If they cannot be closed
+     */
+    public void close() throws IOException {
+    }
+
+    protected ClassData fromBuffer(final File file, final long checksum) {
+        return new ClassData(file, checksum, buffer.getBytes(), buffer.getLength(), null);
+    }
+
+    /**
+     * Create a source for class files in a directory, answering unchanged files from the cache.
+     * @param it Iterator over the class files
+     * @param cache Cache of previous scan results. May be null.
+     * @return Created source
+     */
+    static ClassSource forFiles(final FileIterator it, final ScanCache cache) {
+        return new ClassSource() {
+            @Override
+            ClassData next() throws IOException {
+                final File file = it.nextFile();
+                if (null == file) {
+                    return null;
+                }
+                if (null == cache) {
+                    buffer.read(file);
+                    return fromBuffer(null, 0);
+                }
+
+                final List<AnnotationInformation> cached = cache.get(file);
+                if (null != cached) {
+                    return new ClassData(file, 0, null, 0, cached);
+                }
+                buffer.read(file);
+                final long checksum = buffer.checksum();
+                final List<AnnotationInformation> unchanged = cache.get(file, checksum);
+                if (null != unchanged) {
+                    cache.put(file, checksum, unchanged);
+                    return new ClassData(file, checksum, null, buffer.getLength(), unchanged);
+                }
+                return fromBuffer(file, checksum);
+            }
+
+            @Override
+            public void close() throws IOException {
+                it.close();
+            }
+        };
+    }
+
+    /**
+     * Create a source for the class files provided by a stream iterator, i.e. archive entries.
+     * @param it Iterator over the class files
+     * @return Created source
+     */
+    static ClassSource forStreams(final StreamIterator it) {
+        return new ClassSource() {
+            @Override
+            ClassData next() throws IOException, AnnotationScanException {
+                final InputStream stream = it.next();
+                if (null == stream) {
+                    return null;
+                }
+                try {
+                    buffer.read(stream);
+                } finally {
+                    stream.close();
+                }
+                return fromBuffer(null, 0);
+            }
+
+            @Override
+            public void close() throws IOException {
+                it.close();
+            }
+        };
+    }
+
+    /**
+     * A single class produced by a source. Either the class bytes or the cached annotations are set. The length
+     * is the number of bytes read for the class, which is 0 if the cached annotations were used without reading.
+     */
+    static class ClassData {
+        final File file;
+        final long checksum;
+        final byte[] bytes;
+        final int length;
+        final List<AnnotationInformation> cached;
+
+        ClassData(final File file, final long checksum, final byte[] bytes, final int length, final List<AnnotationInformation> cached) {
+            this.file = file;
+            this.checksum = checksum;
+            this.bytes = bytes;
+            this.length = length;
+            this.cached = cached;
+        }
+
+        /**
+         * Copy the class so its bytes survive the source reading the next class.
+         * @return Class with its own copy of the bytes
+         */
+        ClassData copy() {
+            if (null == bytes) {
+                return this;
+            }
+            final byte[] copy = new byte[length];
+            System.arraycopy(bytes, 0, copy, 0, length);
+            return new ClassData(file, checksum, copy, length, cached);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+/*******************************************************************************
+ * Copyright (c) 2011-2013 Megatome Technologies
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.megatome.knowndefects.scan;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Iterate through several iterators in turn, i.e. a class directory followed by a number of archives. Each
+ * iterator is closed once it is exhausted; closing the composite closes the current and pending iterators.
+ */
+public class CompositeIterator implements StreamIterator {
+    private final List<StreamIterator> iterators;
+    private int index = 0;
+
+    public CompositeIterator(List<StreamIterator> iterators) {
+        this.iterators = new ArrayList<StreamIterator>(iterators);
+    }
+
+    public InputStream next() throws AnnotationScanException {
+        while (index < iterators.size()) {
+            final InputStream stream = iterators.get(index).next();
+            if (stream != null) return stream;
+            try {
+                iterators.get(index).close();
+            } catch (IOException e) {
+                throw new AnnotationScanException(e);
+            }
+            index++;
+        }
+        return null;
+    }
+
+    public void close() throws IOException {
+        IOException failure = null;
+        for (; index < iterators.size(); index++) {
+            try {
+                iterators.get(index).close();
+            } catch (IOException e) {
+                if (null == failure) {
+                    failure = e;
+                }
+            }
+        }
+        if (null != failure) {
+            throw failure;
+        }
+    }
+}
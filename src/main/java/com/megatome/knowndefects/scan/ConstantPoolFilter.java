@@ -0,0 +1,152 @@
+/*******************************************************************************
+ * Copyright (c) 2011-2013 Megatome Technologies
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.megatome.knowndefects.scan;
+
+import java.nio.charset.Charset;
+import java.util.Collection;
+
+/**
+ * Reads just the constant pool of a class file to decide whether the class can contain any of the
+ * annotations of interest. Annotation types are referenced by their descriptor (i.e.
+ * <code>Lcom/megatome/knowndefects/annotations/KnownDefect;</code>) in a UTF8 constant, so a class without
+ * one of those constants cannot carry the annotation and does not need to be fully parsed.
+ * <p>Anything that cannot be understood is accepted so that the full parser can make the final decision.</p>
+ */
+class ConstantPoolFilter {
+    private static final int MAGIC = 0xCAFEBABE;
+
+    private static final int CONSTANT_UTF8 = 1;
+    private static final int CONSTANT_INTEGER = 3;
+    private static final int CONSTANT_FLOAT = 4;
+    private static final int CONSTANT_LONG = 5;
+    private static final int CONSTANT_DOUBLE = 6;
+    private static final int CONSTANT_CLASS = 7;
+    private static final int CONSTANT_STRING = 8;
+    private static final int CONSTANT_FIELDREF = 9;
+    private static final int CONSTANT_METHODREF = 10;
+    private static final int CONSTANT_INTERFACE_METHODREF = 11;
+    private static final int CONSTANT_NAME_AND_TYPE = 12;
+    private static final int CONSTANT_METHOD_HANDLE = 15;
+    private static final int CONSTANT_METHOD_TYPE = 16;
+    private static final int CONSTANT_DYNAMIC = 17;
+    private static final int CONSTANT_INVOKE_DYNAMIC = 18;
+    private static final int CONSTANT_MODULE = 19;
+    private static final int CONSTANT_PACKAGE = 20;
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private final byte[][] descriptors;
+
+    /**
+     * Create a filter for the given annotation types.
+     * @param annotationClasses Fully qualified annotation class names
+     */
+    ConstantPoolFilter(final Collection<String> annotationClasses) {
+        descriptors = new byte[annotationClasses.size()][];
+        int i = 0;
+        for (final String annotationClass : annotationClasses) {
+            descriptors[i++] = ("L" + annotationClass.replace('.', '/') + ";").getBytes(UTF8);
+        }
+    }
+
+    /**
+     * Determine if the class file may contain one of the annotations.
+     * @param bytes Buffer holding the class file
+     * @param length Number of valid bytes in the buffer
+     * @return False only if the class definitely does not reference any of the annotations
+     */
+    boolean accepts(final byte[] bytes, final int length) {
+        if ((length < 10) || (readInt(bytes, 0) != MAGIC)) {
+            return true;
+        }
+        final int count = readUnsignedShort(bytes, 8);
+        int offset = 10;
+        for (int index = 1; index < count; index++) {
+            if (offset >= length) {
+                return true;
+            }
+            final int tag = bytes[offset] & 0xFF;
+            switch (tag) {
+                case CONSTANT_UTF8:
+                    if (offset + 3 > length) {
+                        return true;
+                    }
+                    final int utfLength = readUnsignedShort(bytes, offset + 1);
+                    if (matches(bytes, offset + 3, utfLength, length)) {
+                        return true;
+                    }
+                    offset += 3 + utfLength;
+                    break;
+                case CONSTANT_CLASS:
+                case CONSTANT_STRING:
+                case CONSTANT_METHOD_TYPE:
+                case CONSTANT_MODULE:
+                case CONSTANT_PACKAGE:
+                    offset += 3;
+                    break;
+                case CONSTANT_METHOD_HANDLE:
+                    offset += 4;
+                    break;
+                case CONSTANT_INTEGER:
+                case CONSTANT_FLOAT:
+                case CONSTANT_FIELDREF:
+                case CONSTANT_METHODREF:
+                case CONSTANT_INTERFACE_METHODREF:
+                case CONSTANT_NAME_AND_TYPE:
+                case CONSTANT_DYNAMIC:
+                case CONSTANT_INVOKE_DYNAMIC:
+                    offset += 5;
+                    break;
+                case CONSTANT_LONG:
+                case CONSTANT_DOUBLE:
+                    offset += 9;
+                    index++;
+                    break;
+                default:
+                    return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean matches(final byte[] bytes, final int offset, final int utfLength, final int length) {
+        if (offset + utfLength > length) {
+            return true;
+        }
+        for (final byte[] descriptor : descriptors) {
+            if (descriptor.length != utfLength) {
+                continue;
+            }
+            int i = 0;
+            while ((i < utfLength) && (bytes[offset + i] == descriptor[i])) {
+                i++;
+            }
+            if (i == utfLength) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int readUnsignedShort(final byte[] bytes, final int offset) {
+        return ((bytes[offset] & 0xFF) << 8) | (bytes[offset + 1] & 0xFF);
+    }
+
+    private static int readInt(final byte[] bytes, final int offset) {
+        return (readUnsignedShort(bytes, offset) << 16) | readUnsignedShort(bytes, offset + 2);
+    }
+}
@@ -1,68 +1,167 @@
-/*******************************************************************************
- * Copyright (c) 2011-2013 Megatome Technologies
- *
- * Licensed under the Apache License, Version 2.0 (the "License");
- * you may not use this file except in compliance with the License.
- * You may obtain a copy of the License at
- *
- * http://www.apache.org/licenses/LICENSE-2.0
- *
- * Unless required by applicable law or agreed to in writing, software
- * distributed under the License is distributed on an "AS IS" BASIS,
- * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
- * See the License for the specific language governing permissions and
- * limitations under the License.
- ******************************************************************************/
-/****************************************************************
- * Code in this class borrowed and adapted from the Scannotation library
- * available from http://scannotation.sourceforge.net/
- ****************************************************************/
-package com.megatome.knowndefects.scan;
-
-import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
-import java.io.InputStream;
-import java.util.ArrayList;
-import java.util.List;
-
-/**
- * Iterate through a directory to find files.
- * <p>Code in this class borrowed and adapted from the Scannotation library
- * available from <a href="http://scannotation.sourceforge.net/">http://scannotation.sourceforge.net/</a></p>
- */
-public class FileIterator implements StreamIterator {
-    private List<File> files = new ArrayList<File>();
-    private int index = 0;
-
-    public FileIterator(File file, Filter filter) {
-        try {
-            create(this.files, file, filter);
-        } catch (Exception e) {
-            throw new RuntimeException(e);
-        }
-    }
-
-    protected static void create(List<File> list, File dir, Filter filter) throws Exception {
-        for (final File f : dir.listFiles()) {
-            if (f.isDirectory()) {
-                create(list, f, filter);
-            } else {
-                if ((filter != null) && (!filter.accepts(f.getAbsolutePath()))) {
-                    continue;
-                }
-                list.add(f);
-            }
-        }
-    }
-
-    public InputStream next() throws AnnotationScanException {
-        if (this.index >= this.files.size()) return null;
-        File fp = this.files.get(this.index++);
-        try {
-            return new FileInputStream(fp);
-        } catch (FileNotFoundException e) {
-            throw new AnnotationScanException(e);
-        }
-    }
-}
+/*******************************************************************************
+ * Copyright (c) 2011-2013 Megatome Technologies
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+/****************************************************************
+ * Code in this class borrowed and adapted from the Scannotation library
+ * available from http://scannotation.sourceforge.net/
+ ****************************************************************/
+package com.megatome.knowndefects.scan;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+
+/**
+ * Iterate through a directory to find files.
+ * <p>The directory tree is walked lazily: each call reads only as many directory entries as it needs to find
+ * the next accepted file, and the walk uses an explicit stack of open directories rather than recursion, so
+ * memory use depends on the depth of the tree rather than its size.</p>
+ * <p>Code in this class borrowed and adapted from the Scannotation library
+ * available from <a href="http://scannotation.sourceforge.net/">http://scannotation.sourceforge.net/</a></p>
+ */
+public class FileIterator implements StreamIterator {
+    private final Path root;
+    private final Filter filter;
+    private final PackageMatcher matcher;
+    private final ScanMetrics metrics;
+    private final Deque<DirectoryStream<Path>> streams = new ArrayDeque<DirectoryStream<Path>>();
+    private final Deque<Iterator<Path>> iterators = new ArrayDeque<Iterator<Path>>();
+    private final Deque<PackageMatcher.State> states = new ArrayDeque<PackageMatcher.State>();
+    private boolean started = false;
+
+    public FileIterator(File file, Filter filter) {
+        this(file, filter, null, null);
+    }
+
+    /**
+     * Create an iterator that only enters the directories of scanned packages. Files in packages that are not
+     * scanned are counted as filtered without being offered to the filter.
+     * @param file Root directory, which is the default package
+     * @param filter Filter for the files in scanned packages. May be null.
+     * @param matcher Packages to scan. May be null to scan every directory.
+     * @param metrics Metrics to count pruned directories and skipped files in. Required if a matcher is given.
+     */
+    FileIterator(File file, Filter filter, PackageMatcher matcher, ScanMetrics metrics) {
+        this.root = file.getAbsoluteFile().toPath();
+        this.filter = filter;
+        this.matcher = matcher;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Get the next accepted file without opening it.
+     * @return Next file, or null if there are no more files
+     * @throws IOException If a directory cannot be read
+     */
+    File nextFile() throws IOException {
+        try {
+            if (!started) {
+                started = true;
+                push(root, (null == matcher) ? null : matcher.start());
+            }
+            while (!iterators.isEmpty()) {
+                final Iterator<Path> it = iterators.peek();
+                if (!it.hasNext()) {
+                    pop();
+                    continue;
+                }
+                final Path path = it.next();
+                final PackageMatcher.State state = states.peek();
+                if (Files.isDirectory(path)) {
+                    if (null == matcher) {
+                        push(path, null);
+                        continue;
+                    }
+                    final PackageMatcher.State entered = matcher.enter(state, path.getFileName().toString());
+                    if (null == entered) {
+                        metrics.addPruned();
+                    } else {
+                        push(path, entered);
+                    }
+                } else if ((null != state) && !state.included) {
+                    metrics.addVisited(false);
+                } else if ((filter == null) || (filter.accepts(path.toString()))) {
+                    return path.toFile();
+                }
+            }
+        } catch (DirectoryIteratorException e) {
+            close();
+            throw e.getCause();
+        } catch (IOException e) {
+            close();
+            throw e;
+        } catch (RuntimeException e) {
+            close();
+            throw e;
+        }
+        return null;
+    }
+
+    public InputStream next() throws AnnotationScanException {
+        try {
+            final File fp = nextFile();
+            if (null == fp) return null;
+            return new FileInputStream(fp);
+        } catch (IOException e) {
+            throw new AnnotationScanException(e);
+        }
+    }
+
+    private void push(final Path directory, final PackageMatcher.State state) throws IOException {
+        final DirectoryStream<Path> stream = Files.newDirectoryStream(directory);
+        streams.push(stream);
+        iterators.push(stream.iterator());
+        if (null != state) {
+            states.push(state);
+        }
+    }
+
+    private void pop() throws IOException {
+        iterators.pop();
+        states.poll();
+        streams.pop().close();
+    }
+
+    /**
+     * Close the open directories. The iterator returns no more files once closed.
+     * @throws IOException If a directory cannot be closed
+     */
+    public void close() throws IOException {
+        started = true;
+        IOException failure = null;
+        while (!streams.isEmpty()) {
+            iterators.pop();
+            states.poll();
+            try {
+                streams.pop().close();
+            } catch (IOException e) {
+                if (null == failure) {
+                    failure = e;
+                }
+            }
+        }
+        if (null != failure) {
+            throw failure;
+        }
+    }
+}
@@ -0,0 +1,111 @@
+/*******************************************************************************
+ * Copyright (c) 2011-2013 Megatome Technologies
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+/****************************************************************
+ * Code in this class borrowed and adapted from the Scannotation library
+ * available from http://scannotation.sourceforge.net/
+ ****************************************************************/
+package com.megatome.knowndefects.scan;
+
+import java.io.*;
+import java.util.Locale;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Iterate through the entries of a jar or zip archive without extracting it. An archive file is opened when
+ * the first entry is requested, and closed once the entries are exhausted or reading fails.
+ * <p>Code in this class borrowed and adapted from the Scannotation library
+ * available from <a href="http://scannotation.sourceforge.net/">http://scannotation.sourceforge.net/</a></p>
+ */
+public class JarIterator implements StreamIterator {
+    private final File file;
+    private final Filter filter;
+    private ZipInputStream zip;
+    private boolean closed = false;
+
+    public JarIterator(File file, Filter filter) {
+        this.file = file;
+        this.filter = filter;
+    }
+
+    public JarIterator(InputStream is, Filter filter) {
+        this.file = null;
+        this.filter = filter;
+        this.zip = new ZipInputStream(new BufferedInputStream(is));
+    }
+
+    /**
+     * Determine if a file looks like an archive that can be iterated.
+     * @param file File to check
+     * @return True if the file is a jar or zip file
+     */
+    public static boolean isArchive(File file) {
+        final String name = file.getName().toLowerCase(Locale.ENGLISH);
+        return file.isFile() && (name.endsWith(".jar") || name.endsWith(".zip"));
+    }
+
+    public InputStream next() throws AnnotationScanException {
+        if (closed) return null;
+        try {
+            if (null == zip) {
+                zip = new ZipInputStream(new BufferedInputStream(new FileInputStream(file)));
+            }
+            ZipEntry entry;
+            while ((entry = zip.getNextEntry()) != null) {
+                if (entry.isDirectory()) continue;
+                if ((filter != null) && (!filter.accepts(entry.getName()))) continue;
+                return new EntryInputStream(zip);
+            }
+            close();
+            return null;
+        } catch (IOException e) {
+            abandon();
+            throw new AnnotationScanException(e);
+        } catch (RuntimeException e) {
+            abandon();
+            throw e;
+        }
+    }
+
+    public void close() throws IOException {
+        closed = true;
+        if (null != zip) {
+            zip.close();
+        }
+    }
+
+    private void abandon() {
+        try {
+            close();
+        } catch (IOException e) {
+            // The read failure is more useful to report than the close failure
+        }
+    }
+
+    /**
+     * Stream for a single archive entry. Closing it moves past the entry instead of closing the archive.
+     */
+    private static class EntryInputStream extends FilterInputStream {
+        EntryInputStream(ZipInputStream zip) {
+            super(zip);
+        }
+
+        @Override
+        public void close() throws IOException {
+            ((ZipInputStream) in).closeEntry();
+        }
+    }
+}
@@ -0,0 +1,155 @@
+/*******************************************************************************
+ * Copyright (c) 2011-2013 Megatome Technologies
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.megatome.knowndefects.scan;
+
+import com.megatome.knowndefects.info.AnnotationInformation;
+import com.megatome.knowndefects.info.AnnotationInformationFactory;
+import javassist.bytecode.AnnotationsAttribute;
+import javassist.bytecode.ClassFile;
+import javassist.bytecode.MethodInfo;
+import javassist.bytecode.annotation.Annotation;
+import javassist.bytecode.annotation.AnnotationMemberValue;
+import javassist.bytecode.annotation.ArrayMemberValue;
+import javassist.bytecode.annotation.ClassMemberValue;
+import javassist.bytecode.annotation.EnumMemberValue;
+import javassist.bytecode.annotation.MemberValue;
+import javassist.bytecode.annotation.StringMemberValue;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Parser that reads each class file into a javassist {@link ClassFile}.
+ */
+class JavassistClassParser implements ClassParser {
+    private final Set<String> classTypes;
+
+    JavassistClassParser(final Set<String> classTypes) {
+        this.classTypes = classTypes;
+    }
+
+    public List<AnnotationInformation> parse(final byte[] bytes, final int length, final ScanMetrics metrics) throws IOException {
+        final ClassFile cf = new ClassFile(new DataInputStream(new ByteArrayInputStream(bytes, 0, length)));
+        final List<AnnotationInformation> found = new ArrayList<AnnotationInformation>();
+        scanMethods(cf, found, metrics);
+        return found;
+    }
+
+    private void scanMethods(ClassFile cf, List<AnnotationInformation> found, ScanMetrics metrics) {
+        final List methods = cf.getMethods();
+        if (methods == null) {
+            return;
+        }
+        int annotatedMethods = 0;
+        int lineNumbers = 0;
+        for (final Object obj : methods) {
+            final MethodInfo method = (MethodInfo) obj;
+
+            final AnnotationsAttribute visible = (AnnotationsAttribute) method.getAttribute(AnnotationsAttribute.visibleTag);
+            final AnnotationsAttribute invisible = (AnnotationsAttribute) method.getAttribute(AnnotationsAttribute.invisibleTag);
+            if ((visible == null) && (invisible == null)) {
+                continue;
+            }
+            annotatedMethods++;
+
+            final int matched = found.size();
+            if (visible != null) populate(visible.getAnnotations(), method, cf.getName(), found);
+            if (invisible != null) populate(invisible.getAnnotations(), method, cf.getName(), found);
+            if (found.size() > matched) {
+                final int lineNumber = method.getLineNumber(0);
+                lineNumbers++;
+                for (int i = matched; i < found.size(); i++) {
+                    found.get(i).setLineNumber(lineNumber);
+                }
+            }
+        }
+        metrics.addMethods(annotatedMethods, lineNumbers);
+    }
+
+    private void populate(Annotation[] annotations, MethodInfo method, String className, List<AnnotationInformation> found) {
+        if (annotations == null) return;
+        for (final Annotation ann : annotations) {
+            final String annotationClass = ann.getTypeName();
+            if (classTypes.contains(annotationClass)) {
+                final AnnotationInformation info = AnnotationInformationFactory.createInformation(annotationClass);
+                info.setClassName(className);
+                info.setMethodName(method.getName());
+                final Set memberNames = ann.getMemberNames();
+                if (null != memberNames) {
+                    for (final Object obj : memberNames) {
+                        final String mName = (String)obj;
+                        info.setMethodValue(mName, valueOf(ann.getMemberValue(mName)));
+                    }
+                }
+                found.add(info);
+            }
+        }
+    }
+
+    private static String valueOf(final MemberValue value) {
+        if (value instanceof StringMemberValue) {
+            return ((StringMemberValue) value).getValue();
+        }
+        final StringBuilder out = new StringBuilder();
+        append(value, out);
+        return out.toString();
+    }
+
+    private static void append(final MemberValue value, final StringBuilder out) {
+        if (value instanceof StringMemberValue) {
+            out.append(((StringMemberValue) value).getValue());
+        } else if (value instanceof EnumMemberValue) {
+            out.append(((EnumMemberValue) value).getValue());
+        } else if (value instanceof ClassMemberValue) {
+            out.append(((ClassMemberValue) value).getValue());
+        } else if (value instanceof ArrayMemberValue) {
+            final MemberValue[] elements = ((ArrayMemberValue) value).getValue();
+            if (null != elements) {
+                for (int i = 0; i < elements.length; i++) {
+                    if (i > 0) {
+                        out.append(", ");
+                    }
+                    append(elements[i], out);
+                }
+            }
+        } else if (value instanceof AnnotationMemberValue) {
+            final Annotation annotation = ((AnnotationMemberValue) value).getValue();
+            out.append('@').append(annotation.getTypeName());
+            final Set names = annotation.getMemberNames();
+            if ((null != names) && !names.isEmpty()) {
+                out.append('(');
+                boolean first = true;
+                for (final Object name : names) {
+                    if (!first) {
+                        out.append(", ");
+                    }
+                    first = false;
+                    out.append(name).append('=');
+                    append(annotation.getMemberValue((String) name), out);
+                }
+                out.append(')');
+            }
+        } else {
+            // Primitive values print their Java string form
+            out.append(value);
+        }
+    }
+}
@@ -0,0 +1,188 @@
+/*******************************************************************************
+ * Copyright (c) 2011-2013 Megatome Technologies
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.megatome.knowndefects.scan;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Decides which packages are scanned from a set of include and exclude patterns. A pattern is a package name
+ * such as <code>com.example</code> and matches that package and all of its subpackages. A <code>*</code>
+ * segment matches any single package name, i.e. <code>com.*.internal</code>.
+ * <p>A package is scanned if it is matched by an include pattern, or there are no include patterns, and it is
+ * not matched by an exclude pattern. The patterns are compiled into a trie of package names that is walked one
+ * directory at a time, so a directory that cannot contain a scanned package is never entered.</p>
+ * <p>Matchers are immutable and thread safe.</p>
+ */
+final class PackageMatcher {
+    private final Node root = new Node();
+    private final boolean hasIncludes;
+    private final State start;
+
+    private PackageMatcher(final Collection<String> includes, final Collection<String> excludes) {
+        for (final String pattern : includes) {
+            add(pattern, true);
+        }
+        for (final String pattern : excludes) {
+            add(pattern, false);
+        }
+        hasIncludes = !includes.isEmpty();
+        start = new State(new Node[]{root}, !hasIncludes);
+    }
+
+    /**
+     * Compile include and exclude patterns.
+     * @param includes Patterns of the packages to scan. Empty to scan every package.
+     * @param excludes Patterns of the packages never scanned
+     * @return Compiled matcher
+     * @throws IllegalArgumentException If a pattern is not a valid package name
+     */
+    static PackageMatcher compile(final Collection<String> includes, final Collection<String> excludes) {
+        return new PackageMatcher(includes, excludes);
+    }
+
+    /**
+     * Get the state for the root of a walk, which is the default package.
+     * @return Root state
+     */
+    State start() {
+        return start;
+    }
+
+    /**
+     * Move from a package into one of its subpackages.
+     * @param state State of the parent package
+     * @param name Name of the subpackage, i.e. a directory name
+     * @return State of the subpackage, or null if neither it nor any of its subpackages are scanned
+     */
+    State enter(final State state, final String name) {
+        boolean included = state.included;
+        boolean leadsToInclude = false;
+        List<Node> next = null;
+        for (final Node node : state.nodes) {
+            for (int i = 0; i < 2; i++) {
+                final Node child = (i == 0) ? node.children.get(name) : node.wildcard;
+                if (null == child) {
+                    continue;
+                }
+                if (child.exclude) {
+                    return null;
+                }
+                included |= child.include;
+                leadsToInclude |= child.leadsToInclude;
+                if (child.hasChildren()) {
+                    if (null == next) {
+                        next = new ArrayList<Node>(2);
+                    }
+                    next.add(child);
+                }
+            }
+        }
+        if (!included && !leadsToInclude) {
+            return null;
+        }
+        if (null == next) {
+            return included ? State.INCLUDED : null;
+        }
+        return new State(next.toArray(new Node[next.size()]), included);
+    }
+
+    /**
+     * Determine if an archive entry or relative class file path is in a scanned package.
+     * @param path Path using '/' separators, i.e. <code>com/example/Foo.class</code>
+     * @return True if the package of the path is scanned
+     */
+    boolean acceptsPath(final String path) {
+        State state = start;
+        int begin = path.startsWith("/") ? 1 : 0;
+        int end;
+        while ((end = path.indexOf('/', begin)) >= 0) {
+            state = enter(state, path.substring(begin, end));
+            if (null == state) {
+                return false;
+            }
+            begin = end + 1;
+        }
+        return state.included;
+    }
+
+    private void add(final String pattern, final boolean include) {
+        if ((null == pattern) || pattern.isEmpty()) {
+            throw new IllegalArgumentException("Package pattern cannot be empty");
+        }
+        Node node = root;
+        for (final String name : pattern.split("\\.", -1)) {
+            if (name.isEmpty()) {
+                throw new IllegalArgumentException("Invalid package pattern " + pattern);
+            }
+            if (include) {
+                node.leadsToInclude = true;
+            }
+            if ("*".equals(name)) {
+                if (null == node.wildcard) {
+                    node.wildcard = new Node();
+                }
+                node = node.wildcard;
+            } else {
+                Node child = node.children.get(name);
+                if (null == child) {
+                    child = new Node();
+                    node.children.put(name, child);
+                }
+                node = child;
+            }
+        }
+        if (include) {
+            node.include = true;
+            node.leadsToInclude = true;
+        } else {
+            node.exclude = true;
+        }
+    }
+
+    /**
+     * Position of a walk in the package tree: the trie nodes still being matched and whether classes directly in
+     * the package are scanned.
+     */
+    static final class State {
+        private static final Node[] NO_NODES = new Node[0];
+        static final State INCLUDED = new State(NO_NODES, true);
+
+        private final Node[] nodes;
+        final boolean included;
+
+        private State(final Node[] nodes, final boolean included) {
+            this.nodes = nodes;
+            this.included = included;
+        }
+    }
+
+    private static final class Node {
+        private final Map<String, Node> children = new HashMap<String, Node>();
+        private Node wildcard;
+        private boolean include;
+        private boolean exclude;
+        private boolean leadsToInclude;
+
+        private boolean hasChildren() {
+            return (null != wildcard) || !children.isEmpty();
+        }
+    }
+}
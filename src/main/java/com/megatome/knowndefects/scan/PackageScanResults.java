@@ -21,10 +21,19 @@ import com.megatome.knowndefects.info.KnownDefectInformation;
 
 import java.util.*;
 
+/**
+ * Results for a single package, split by annotation type. Classes are kept in hash maps while results are
+ * added, and sorted once when the package is frozen.
+ */
 public class PackageScanResults implements Comparable<PackageScanResults> {
-    private String packageName;
-    private Map<String, ClassAnnotation> knownDefectResults = new TreeMap<String, ClassAnnotation>();
-    private Map<String, ClassAnnotation> knownAcceptedDefectResults = new TreeMap<String, ClassAnnotation>();
+    private final String packageName;
+    private final Map<String, ClassAnnotation> knownDefectResults = new HashMap<String, ClassAnnotation>();
+    private final Map<String, ClassAnnotation> knownAcceptedDefectResults = new HashMap<String, ClassAnnotation>();
+
+    private List<ClassAnnotation> frozenKnownDefectResults;
+    private List<ClassAnnotation> frozenKnownAcceptedDefectResults;
+    private List<String> frozenClassNames;
+    private volatile boolean frozen = false;
 
     public PackageScanResults(final String packageName) {
         this.packageName = packageName;
@@ -34,7 +43,14 @@ public class PackageScanResults implements Comparable<PackageScanResults> {
         return packageName;
     }
 
+    /**
+     * Add a result
+     * @param className Simple name of the class the result was found in
+     * @param info Result to add
+     * @throws IllegalStateException If the results are frozen
+     */
     public void addResult(final String className, final AnnotationInformation info) {
+        checkNotFrozen();
         if (info instanceof KnownDefectInformation) {
             addResult(knownDefectResults, className, info);
         } else if (info instanceof KnownAcceptedDefectInformation) {
@@ -46,10 +62,50 @@ public class PackageScanResults implements Comparable<PackageScanResults> {
         ClassAnnotation classAnnotation = resultList.get(className);
         if (null == classAnnotation) {
             classAnnotation = new ClassAnnotation(packageName, className);
+            resultList.put(className, classAnnotation);
         }
 
         classAnnotation.addAnnotation(info);
-        resultList.put(className, classAnnotation);
+    }
+
+    /**
+     * Sort the classes and their annotations and make the results immutable.
+     */
+    synchronized void freeze() {
+        if (isFrozen()) {
+            return;
+        }
+        frozenKnownDefectResults = Collections.unmodifiableList(sorted(knownDefectResults));
+        frozenKnownAcceptedDefectResults = Collections.unmodifiableList(sorted(knownAcceptedDefectResults));
+        frozenClassNames = Collections.unmodifiableList(sortedClassNames());
+        frozen = true;
+    }
+
+    boolean isFrozen() {
+        return frozen;
+    }
+
+    private void checkNotFrozen() {
+        if (isFrozen()) {
+            throw new IllegalStateException("Scan results are frozen");
+        }
+    }
+
+    private static List<ClassAnnotation> sorted(final Map<String, ClassAnnotation> classResults) {
+        final List<ClassAnnotation> results = new ArrayList<ClassAnnotation>(classResults.values());
+        Collections.sort(results);
+        for (final ClassAnnotation classAnnotation : results) {
+            classAnnotation.getAnnotations();
+        }
+        return results;
+    }
+
+    private List<String> sortedClassNames() {
+        final Set<String> nameSet = new HashSet<String>(knownDefectResults.keySet());
+        nameSet.addAll(knownAcceptedDefectResults.keySet());
+        final List<String> classNames = new ArrayList<String>(nameSet);
+        Collections.sort(classNames);
+        return classNames;
     }
 
     public boolean hasKnownDefectResults() {
@@ -65,9 +121,10 @@ public class PackageScanResults implements Comparable<PackageScanResults> {
     }
 
     public List<ClassAnnotation> getKnownDefectResults() {
-        final List<ClassAnnotation> results = new ArrayList<ClassAnnotation>(knownDefectResults.values());
-        Collections.sort(results);
-        return results;
+        if (isFrozen()) {
+            return frozenKnownDefectResults;
+        }
+        return sorted(knownDefectResults);
     }
 
     public ClassAnnotation getKnownDefectResults(final String className) {
@@ -87,36 +144,53 @@ public class PackageScanResults implements Comparable<PackageScanResults> {
     }
 
     public List<ClassAnnotation> getKnownAcceptedDefectResults() {
-        final List<ClassAnnotation> results = new ArrayList<ClassAnnotation>(knownAcceptedDefectResults.values());
-        Collections.sort(results);
-        return results;
+        if (isFrozen()) {
+            return frozenKnownAcceptedDefectResults;
+        }
+        return sorted(knownAcceptedDefectResults);
     }
 
     public ClassAnnotation getKnownAcceptedDefectResults(final String className) {
         return knownAcceptedDefectResults.get(className);
     }
 
+    /**
+     * Get all of the annotations found in a class, regardless of annotation type.
+     * @param className Name of the class
+     * @return Annotations found in the class, sorted by method name
+     */
+    public ClassAnnotation getClassResults(final String className) {
+        final ClassAnnotation classResults = new ClassAnnotation(packageName, className);
+        return classResults.merge(getKnownDefectResults(className)).merge(getKnownAcceptedDefectResults(className));
+    }
+
     public List<String> getClassNames() {
-        final Set<String> nameSet = new HashSet<String>(knownDefectResults.keySet());
-        nameSet.addAll(knownAcceptedDefectResults.keySet());
-        final List<String> classNames = new ArrayList<String>(nameSet);
-        Collections.sort(classNames);
-        return classNames;
+        if (isFrozen()) {
+            return frozenClassNames;
+        }
+        return sortedClassNames();
     }
 
+    /**
+     * Add all of the results from another package. The class results are copied, so later changes to the source
+     * do not affect these results.
+     * @param mergeSource Results to add
+     * @throws IllegalStateException If the results are frozen
+     */
     public void merge(final PackageScanResults mergeSource) {
-        for (final ClassAnnotation classAnnotation : mergeSource.getKnownDefectResults()) {
-            if (knownDefectResults.containsKey(classAnnotation.getClassName())) {
-                knownDefectResults.get(classAnnotation.getClassName()).merge(classAnnotation);
-            } else {
-                knownDefectResults.put(classAnnotation.getClassName(), classAnnotation);
-            }
-        }
-        for (final ClassAnnotation classAnnotation : mergeSource.getKnownAcceptedDefectResults()) {
-            if (knownAcceptedDefectResults.containsKey(classAnnotation.getClassName())) {
-                knownAcceptedDefectResults.get(classAnnotation.getClassName()).merge(classAnnotation);
+        checkNotFrozen();
+        merge(knownDefectResults, mergeSource.knownDefectResults);
+        merge(knownAcceptedDefectResults, mergeSource.knownAcceptedDefectResults);
+    }
+
+    private void merge(final Map<String, ClassAnnotation> target, final Map<String, ClassAnnotation> source) {
+        for (final ClassAnnotation classAnnotation : source.values()) {
+            final ClassAnnotation existing = target.get(classAnnotation.getClassName());
+            if (null == existing) {
+                target.put(classAnnotation.getClassName(),
+                        new ClassAnnotation(packageName, classAnnotation.getClassName()).merge(classAnnotation));
             } else {
-                knownAcceptedDefectResults.put(classAnnotation.getClassName(), classAnnotation);
+                existing.merge(classAnnotation);
             }
         }
     }
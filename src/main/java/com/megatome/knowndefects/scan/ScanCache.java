@@ -0,0 +1,263 @@
+/*******************************************************************************
+ * Copyright (c) 2011-2013 Megatome Technologies
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.megatome.knowndefects.scan;
+
+import com.megatome.knowndefects.info.AnnotationInformation;
+import com.megatome.knowndefects.info.AnnotationInformationFactory;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Persistent cache of the annotations found in individual class files. A class file is considered unchanged
+ * when its size and modification time match the cached entry, or failing that when its size and checksum match.
+ * Only the entries looked up or stored since the cache was loaded are saved, so class files that no longer
+ * exist drop out of the cache.
+ * <p>The cache also records the configuration of the scanner that filled it, i.e. the parser and the annotation
+ * types, and its entries are discarded when it is given to a scanner with a different configuration.</p>
+ * <p>The cache is safe for use by multiple scanning threads.</p>
+ */
+public class ScanCache {
+    private static final int MAGIC = 0x4B444331;
+    private static final int VERSION = 3;
+
+    private final File cacheFile;
+    private final Map<String, Entry> previous;
+    private final Map<String, Entry> current = new ConcurrentHashMap<String, Entry>();
+    private String configuration;
+    private boolean configured = false;
+
+    private ScanCache(final File cacheFile, final Map<String, Entry> previous, final String configuration) {
+        this.cacheFile = cacheFile;
+        this.previous = previous;
+        this.configuration = configuration;
+    }
+
+    /**
+     * Create an empty cache that will be saved to the given file.
+     * @param cacheFile File to save the cache to
+     * @return Empty cache
+     */
+    public static ScanCache create(final File cacheFile) {
+        return new ScanCache(cacheFile, new ConcurrentHashMap<String, Entry>(), null);
+    }
+
+    /**
+     * Load a cache from a file. A missing, unreadable or outdated file results in an empty cache.
+     * @param cacheFile File to load the cache from
+     * @return Loaded cache
+     */
+    public static ScanCache load(final File cacheFile) {
+        final Map<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+        String configuration = null;
+        if (cacheFile.isFile()) {
+            try {
+                configuration = readEntries(cacheFile, entries);
+            } catch (IOException e) {
+                entries.clear();
+            }
+        }
+        return new ScanCache(cacheFile, entries, configuration);
+    }
+
+    /**
+     * Tie the cache to the configuration of the scanner using it. Entries loaded for a different configuration
+     * are discarded, since the scanner could find different annotations in the same class files.
+     * @param scannerConfiguration Description of the parser and annotation types
+     * @throws IllegalStateException If the cache is already used by a scanner with a different configuration
+     */
+    synchronized void configure(final String scannerConfiguration) {
+        if (scannerConfiguration.equals(configuration)) {
+            configured = true;
+            return;
+        }
+        if (configured) {
+            throw new IllegalStateException("Scan cache is already used by a scanner with a different configuration");
+        }
+        previous.clear();
+        configuration = scannerConfiguration;
+        configured = true;
+    }
+
+    /**
+     * Get the cached annotations for a class file whose size and modification time are unchanged.
+     * @param file Class file
+     * @return Cached annotations, or null if the file must be read
+     */
+    List<AnnotationInformation> get(final File file) {
+        final String key = file.getAbsolutePath();
+        final Entry entry = previous.get(key);
+        if ((null == entry) || (entry.size != file.length()) || (entry.lastModified != file.lastModified())) {
+            return null;
+        }
+        current.put(key, entry);
+        return entry.annotations;
+    }
+
+    /**
+     * Get the cached annotations for a class file whose size and contents are unchanged.
+     * @param file Class file
+     * @param checksum Checksum of the current file contents
+     * @return Cached annotations, or null if the file must be scanned
+     */
+    List<AnnotationInformation> get(final File file, final long checksum) {
+        final Entry entry = previous.get(file.getAbsolutePath());
+        if ((null == entry) || (entry.size != file.length()) || (entry.checksum != checksum)) {
+            return null;
+        }
+        return entry.annotations;
+    }
+
+    /**
+     * Store the annotations found in a class file.
+     * @param file Class file
+     * @param checksum Checksum of the file contents
+     * @param annotations Annotations found in the file
+     */
+    void put(final File file, final long checksum, final List<AnnotationInformation> annotations) {
+        current.put(file.getAbsolutePath(), new Entry(file.length(), file.lastModified(), checksum, annotations));
+    }
+
+    /**
+     * Save the cache.
+     * @throws IOException If the cache file cannot be written
+     */
+    public void save() throws IOException {
+        final File parent = cacheFile.getAbsoluteFile().getParentFile();
+        if ((null != parent) && !parent.exists() && !parent.mkdirs()) {
+            throw new IOException("Could not create cache directory " + parent);
+        }
+        final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(cacheFile)));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            synchronized (this) {
+                writeString(out, configuration);
+            }
+            out.writeInt(current.size());
+            for (final Map.Entry<String, Entry> mapEntry : current.entrySet()) {
+                final Entry entry = mapEntry.getValue();
+                writeString(out, mapEntry.getKey());
+                out.writeLong(entry.size);
+                out.writeLong(entry.lastModified);
+                out.writeLong(entry.checksum);
+                out.writeInt(entry.annotations.size());
+                for (final AnnotationInformation info : entry.annotations) {
+                    writeInformation(out, info);
+                }
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Read the entries of a cache file.
+     * @return Configuration of the scanner that wrote the entries, or null if there is none
+     */
+    private static String readEntries(final File cacheFile, final Map<String, Entry> entries) throws IOException {
+        final DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(cacheFile)));
+        try {
+            if ((in.readInt() != MAGIC) || (in.readInt() != VERSION)) {
+                return null;
+            }
+            final String configuration = readString(in);
+            final int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                final String key = readString(in);
+                final long size = in.readLong();
+                final long lastModified = in.readLong();
+                final long checksum = in.readLong();
+                final int annotationCount = in.readInt();
+                final List<AnnotationInformation> annotations = new ArrayList<AnnotationInformation>(annotationCount);
+                for (int j = 0; j < annotationCount; j++) {
+                    annotations.add(readInformation(in));
+                }
+                entries.put(key, new Entry(size, lastModified, checksum, Collections.unmodifiableList(annotations)));
+            }
+            return configuration;
+        } finally {
+            in.close();
+        }
+    }
+
+    static void writeInformation(final DataOutputStream out, final AnnotationInformation info) throws IOException {
+        writeString(out, info.getAnnotationName());
+        writeString(out, info.getClassName());
+        writeString(out, info.getMethodName());
+        out.writeInt(info.getLineNumber());
+        final List<String> methodNames = info.getMethodNames();
+        out.writeInt(methodNames.size());
+        for (final String methodName : methodNames) {
+            writeString(out, methodName);
+            writeString(out, info.getMethodValue(methodName));
+        }
+    }
+
+    static AnnotationInformation readInformation(final DataInputStream in) throws IOException {
+        final AnnotationInformation info = AnnotationInformationFactory.createInformation(readString(in));
+        if (null == info) {
+            throw new IOException("Unknown annotation type in cache");
+        }
+        info.setClassName(readString(in));
+        info.setMethodName(readString(in));
+        info.setLineNumber(in.readInt());
+        final int valueCount = in.readInt();
+        for (int k = 0; k < valueCount; k++) {
+            info.setMethodValue(readString(in), readString(in));
+        }
+        return info;
+    }
+
+    private static void writeString(final DataOutputStream out, final String value) throws IOException {
+        if (null == value) {
+            out.writeInt(-1);
+            return;
+        }
+        final byte[] bytes = value.getBytes("UTF-8");
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(final DataInputStream in) throws IOException {
+        final int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        final byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, "UTF-8");
+    }
+
+    private static class Entry {
+        private final long size;
+        private final long lastModified;
+        private final long checksum;
+        private final List<AnnotationInformation> annotations;
+
+        Entry(final long size, final long lastModified, final long checksum, final List<AnnotationInformation> annotations) {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.checksum = checksum;
+            this.annotations = annotations;
+        }
+    }
+}
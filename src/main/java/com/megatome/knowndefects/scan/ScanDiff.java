@@ -0,0 +1,205 @@
+/*******************************************************************************
+ * Copyright (c) 2011-2013 Megatome Technologies
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.megatome.knowndefects.scan;
+
+import com.megatome.knowndefects.info.AnnotationInformation;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Differences between a baseline scan and the current scan. Annotations are matched by annotation type, class
+ * and method, so an annotation is added, removed, or changed when its member values differ. A moved method only
+ * changes its line number and is not reported. Overloaded methods share a name, so their annotations are paired
+ * by member values first and by line number second.
+ * <p>Each kind of difference is held as frozen scan results, so it can be rendered like a full scan.</p>
+ */
+public class ScanDiff {
+    private final AnnotationScanResults added = new AnnotationScanResults();
+    private final AnnotationScanResults removed = new AnnotationScanResults();
+    private final AnnotationScanResults changedBefore = new AnnotationScanResults();
+    private final AnnotationScanResults changedAfter = new AnnotationScanResults();
+    private int addedCount;
+    private int removedCount;
+    private int changedCount;
+
+    private ScanDiff() {}
+
+    /**
+     * Compare two scans.
+     * @param baseline Results of the earlier scan
+     * @param current Results of the current scan
+     * @return Differences between the scans
+     */
+    public static ScanDiff compare(final AnnotationScanResults baseline, final AnnotationScanResults current) {
+        final Map<String, List<AnnotationInformation>> previous = group(baseline);
+        final ScanDiff diff = new ScanDiff();
+        for (final Map.Entry<String, List<AnnotationInformation>> entry : group(current).entrySet()) {
+            List<AnnotationInformation> before = previous.remove(entry.getKey());
+            if (null == before) {
+                before = new ArrayList<AnnotationInformation>(0);
+            }
+            final List<AnnotationInformation> after = entry.getValue();
+            // Overloaded methods share a key, so pair the closest matches first
+            diff.match(before, after, true, true);
+            diff.match(before, after, true, false);
+            diff.match(before, after, false, true);
+            diff.match(before, after, false, false);
+            for (final AnnotationInformation info : after) {
+                diff.added.addResult(info.getClassName(), info);
+                diff.addedCount++;
+            }
+            diff.addRemoved(before);
+        }
+        for (final List<AnnotationInformation> before : previous.values()) {
+            diff.addRemoved(before);
+        }
+
+        diff.added.freeze();
+        diff.removed.freeze();
+        diff.changedBefore.freeze();
+        diff.changedAfter.freeze();
+        return diff;
+    }
+
+    private static Map<String, List<AnnotationInformation>> group(final AnnotationScanResults results) {
+        final Map<String, List<AnnotationInformation>> grouped = new LinkedHashMap<String, List<AnnotationInformation>>();
+        for (final PackageScanResults packageScanResults : results.getAllResults()) {
+            for (final String className : packageScanResults.getClassNames()) {
+                for (final AnnotationInformation info : packageScanResults.getClassResults(className).getAnnotations()) {
+                    final String key = key(info);
+                    List<AnnotationInformation> infos = grouped.get(key);
+                    if (null == infos) {
+                        infos = new ArrayList<AnnotationInformation>(1);
+                        grouped.put(key, infos);
+                    }
+                    infos.add(info);
+                }
+            }
+        }
+        return grouped;
+    }
+
+    /**
+     * Pair annotations with the same key and remove the pairs from both lists. Pairs with different values are
+     * recorded as changed.
+     * @param before Unpaired baseline annotations
+     * @param after Unpaired current annotations
+     * @param values True to only pair annotations with the same member values
+     * @param line True to only pair annotations on the same line
+     */
+    private void match(final List<AnnotationInformation> before, final List<AnnotationInformation> after,
+                       final boolean values, final boolean line) {
+        for (final Iterator<AnnotationInformation> afterIt = after.iterator(); afterIt.hasNext() && !before.isEmpty();) {
+            final AnnotationInformation info = afterIt.next();
+            for (final Iterator<AnnotationInformation> beforeIt = before.iterator(); beforeIt.hasNext();) {
+                final AnnotationInformation candidate = beforeIt.next();
+                final boolean same = sameValues(candidate, info);
+                if ((values && !same) || (line && (candidate.getLineNumber() != info.getLineNumber()))) {
+                    continue;
+                }
+                if (!same) {
+                    changedBefore.addResult(candidate.getClassName(), candidate);
+                    changedAfter.addResult(info.getClassName(), info);
+                    changedCount++;
+                }
+                beforeIt.remove();
+                afterIt.remove();
+                break;
+            }
+        }
+    }
+
+    private void addRemoved(final List<AnnotationInformation> before) {
+        for (final AnnotationInformation info : before) {
+            removed.addResult(info.getClassName(), info);
+            removedCount++;
+        }
+    }
+
+    private static String key(final AnnotationInformation info) {
+        return info.getAnnotationName() + ':' + info.getClassName() + '#' + info.getMethodName();
+    }
+
+    private static boolean sameValues(final AnnotationInformation before, final AnnotationInformation after) {
+        final List<String> names = before.getMethodNames();
+        final List<String> afterNames = after.getMethodNames();
+        if (names.size() != afterNames.size()) {
+            return false;
+        }
+        for (final String name : names) {
+            final String beforeValue = before.getMethodValue(name);
+            final String afterValue = after.getMethodValue(name);
+            if (!afterNames.contains(name)
+                    || ((null == beforeValue) ? (null != afterValue) : !beforeValue.equals(afterValue))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Get the annotations only found in the current scan.
+     * @return Added annotations
+     */
+    public AnnotationScanResults getAdded() {
+        return added;
+    }
+
+    /**
+     * Get the annotations only found in the baseline scan.
+     * @return Removed annotations
+     */
+    public AnnotationScanResults getRemoved() {
+        return removed;
+    }
+
+    /**
+     * Get the baseline version of the annotations whose values changed.
+     * @return Changed annotations as they were
+     */
+    public AnnotationScanResults getChangedBefore() {
+        return changedBefore;
+    }
+
+    /**
+     * Get the current version of the annotations whose values changed.
+     * @return Changed annotations as they are now
+     */
+    public AnnotationScanResults getChangedAfter() {
+        return changedAfter;
+    }
+
+    public int getAddedCount() {
+        return addedCount;
+    }
+
+    public int getRemovedCount() {
+        return removedCount;
+    }
+
+    public int getChangedCount() {
+        return changedCount;
+    }
+
+    public boolean isEmpty() {
+        return (addedCount == 0) && (removedCount == 0) && (changedCount == 0);
+    }
+}
@@ -0,0 +1,202 @@
+/*******************************************************************************
+ * Copyright (c) 2011-2013 Megatome Technologies
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.megatome.knowndefects.scan;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts and timings collected while scanning for annotations and rendering the report. Walking covers finding
+ * class files in the directories or archives and reading their bytes, parsing covers finding the annotations in
+ * the class bytes, aggregation covers adding them to the results and rendering covers writing the report. Each
+ * time is the wall time of its stage. When classes are parsed on several threads the constant pool prefilter is
+ * part of the walk, and the parse time runs from the first class starting to be parsed to the last one finishing,
+ * overlapping the walk time.
+ * <p>Instances are thread safe and may be shared by several scans to get a combined total.</p>
+ */
+public class ScanMetrics {
+    private final AtomicLong walkNanos = new AtomicLong();
+    private final AtomicLong parseNanos = new AtomicLong();
+    private final AtomicLong aggregateNanos = new AtomicLong();
+    private final AtomicLong renderNanos = new AtomicLong();
+    private final AtomicLong filesVisited = new AtomicLong();
+    private final AtomicLong filesFiltered = new AtomicLong();
+    private final AtomicLong directoriesPruned = new AtomicLong();
+    private final AtomicLong classesRead = new AtomicLong();
+    private final AtomicLong classesPrefiltered = new AtomicLong();
+    private final AtomicLong classesParsed = new AtomicLong();
+    private final AtomicLong annotatedMethods = new AtomicLong();
+    private final AtomicLong lineNumbersResolved = new AtomicLong();
+    private final AtomicLong bytesRead = new AtomicLong();
+    private final AtomicLong annotationsFound = new AtomicLong();
+
+    void addVisited(final boolean accepted) {
+        filesVisited.incrementAndGet();
+        if (!accepted) {
+            filesFiltered.incrementAndGet();
+        }
+    }
+
+    void addPruned() {
+        directoriesPruned.incrementAndGet();
+    }
+
+    void addRead(final long nanos, final int bytes) {
+        walkNanos.addAndGet(nanos);
+        classesRead.incrementAndGet();
+        bytesRead.addAndGet(bytes);
+    }
+
+    void addPrefiltered() {
+        classesPrefiltered.incrementAndGet();
+    }
+
+    void addParsed() {
+        classesParsed.incrementAndGet();
+    }
+
+    void addParseTime(final long nanos) {
+        parseNanos.addAndGet(nanos);
+    }
+
+    void addMethods(final int annotated, final int lineNumbers) {
+        annotatedMethods.addAndGet(annotated);
+        lineNumbersResolved.addAndGet(lineNumbers);
+    }
+
+    void addAggregate(final long nanos, final int annotations) {
+        aggregateNanos.addAndGet(nanos);
+        annotationsFound.addAndGet(annotations);
+    }
+
+    /**
+     * Record the time spent rendering a report of the scan results.
+     * @param nanos Elapsed time in nanoseconds
+     */
+    public void addRender(final long nanos) {
+        renderNanos.addAndGet(nanos);
+    }
+
+    public long getWalkMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(walkNanos.get());
+    }
+
+    public long getParseMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(parseNanos.get());
+    }
+
+    public long getAggregateMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(aggregateNanos.get());
+    }
+
+    public long getRenderMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(renderNanos.get());
+    }
+
+    /**
+     * Get the number of files and archive entries offered to the scan filter.
+     * @return Files visited
+     */
+    public long getFilesVisited() {
+        return filesVisited.get();
+    }
+
+    /**
+     * Get the number of visited files that were skipped because they are not classes or are in an ignored package.
+     * @return Files filtered out
+     */
+    public long getFilesFiltered() {
+        return filesFiltered.get();
+    }
+
+    /**
+     * Get the number of directories that were not entered because they cannot contain a scanned package.
+     * @return Directories pruned
+     */
+    public long getDirectoriesPruned() {
+        return directoriesPruned.get();
+    }
+
+    /**
+     * Get the number of class files read, including those answered from the scan cache.
+     * @return Classes read
+     */
+    public long getClassesRead() {
+        return classesRead.get();
+    }
+
+    /**
+     * Get the number of class files skipped without being parsed, because their constant pool does not refer to
+     * any of the scanned annotation types.
+     * @return Classes prefiltered
+     */
+    public long getClassesPrefiltered() {
+        return classesPrefiltered.get();
+    }
+
+    /**
+     * Get the number of class files handed to the parser. Classes skipped by the prefilter are not counted.
+     * @return Classes parsed
+     */
+    public long getClassesParsed() {
+        return classesParsed.get();
+    }
+
+    /**
+     * Get the number of parsed methods that carry any annotation, whether or not it is a KD annotation.
+     * @return Annotated methods
+     */
+    public long getAnnotatedMethods() {
+        return annotatedMethods.get();
+    }
+
+    /**
+     * Get the number of methods whose line number was looked up. Only methods carrying a KD annotation are
+     * looked up.
+     * @return Line numbers resolved
+     */
+    public long getLineNumbersResolved() {
+        return lineNumbersResolved.get();
+    }
+
+    /**
+     * Get the number of class file bytes read. Classes answered from the cache without being read are not counted.
+     * @return Bytes read
+     */
+    public long getBytesRead() {
+        return bytesRead.get();
+    }
+
+    /**
+     * Get the number of annotations added to the results, including those answered from the scan cache.
+     * @return Annotations found
+     */
+    public long getAnnotationsFound() {
+        return annotationsFound.get();
+    }
+
+    @Override
+    public String toString() {
+        return "visited " + getFilesVisited() + " files (" + getFilesFiltered() + " filtered, " + getDirectoriesPruned()
+                + " directories pruned), read " + getClassesRead()
+                + " classes (" + getBytesRead() + " bytes) in " + getWalkMillis() + " ms, prefiltered "
+                + getClassesPrefiltered() + " classes, parsed " + getClassesParsed()
+                + " classes (" + getAnnotatedMethods() + " annotated methods, " + getLineNumbersResolved()
+                + " line numbers resolved) in " + getParseMillis() + " ms, aggregated " + getAnnotationsFound() + " annotations in "
+                + getAggregateMillis() + " ms, rendered in " + getRenderMillis() + " ms";
+    }
+}
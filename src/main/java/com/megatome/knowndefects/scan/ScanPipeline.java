@@ -0,0 +1,268 @@
+/*******************************************************************************
+ * Copyright (c) 2011-2013 Megatome Technologies
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.megatome.knowndefects.scan;
+
+import com.megatome.knowndefects.info.AnnotationInformation;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Runs a scan as three stages connected by bounded queues:
+ * <ol>
+ *     <li>a single reader thread pulls classes from a {@link ClassSource},</li>
+ *     <li>a pool of parser threads finds the annotations in each class, and</li>
+ *     <li>the calling thread adds the found annotations to the results, so the results only ever have one writer.</li>
+ * </ol>
+ * <p>When a queue is full the stage feeding it waits, so a slow file system holds back reading rather than
+ * filling the heap, and a slow parser holds back the reader. The first failure in any stage stops the other
+ * stages and is rethrown on the calling thread.</p>
+ */
+class ScanPipeline {
+    private static final int QUEUE_CAPACITY = 256;
+    private static final long POLL_MILLIS = 100;
+    private static final ClassSource.ClassData END_OF_CLASSES = new ClassSource.ClassData(null, 0, null, 0, null);
+    private static final List<AnnotationInformation> END_OF_RESULTS = new ArrayList<AnnotationInformation>(0);
+
+    private final AnnotationScanner scanner;
+    private final int parsers;
+    private final ScanCache cache;
+    private final ScanMetrics metrics;
+    private final BlockingQueue<ClassSource.ClassData> classes = new ArrayBlockingQueue<ClassSource.ClassData>(QUEUE_CAPACITY);
+    private final BlockingQueue<List<AnnotationInformation>> found = new ArrayBlockingQueue<List<AnnotationInformation>>(QUEUE_CAPACITY);
+    private final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+    private boolean parsing = false;
+    private long parseStart;
+    private long parseEnd;
+
+    /**
+     * @param scanner Scanner used to parse the classes
+     * @param parsers Number of parser threads
+     * @param cache Cache to store newly parsed results in. May be null.
+     * @param metrics Metrics to record counts and stage times in
+     */
+    ScanPipeline(final AnnotationScanner scanner, final int parsers, final ScanCache cache, final ScanMetrics metrics) {
+        this.scanner = scanner;
+        this.parsers = parsers;
+        this.cache = cache;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Scan every class provided by the source.
+     * @param source Source of the classes. The reader thread runs the prefilter on the source's buffer and only
+     *               copies the classes that need parsing. Closed by the reader thread once it stops reading.
+     * @param results Results to add found annotations to
+     * @throws IOException If a class cannot be read or parsed
+     * @throws AnnotationScanException If the source fails
+     */
+    void run(final ClassSource source, final AnnotationScanResults results) throws IOException, AnnotationScanException {
+        final Thread reader = new Thread(new Runnable() {
+            public void run() {
+                read(source);
+            }
+        }, "knowndefects-reader");
+        reader.setDaemon(true);
+        final ExecutorService parserPool = Executors.newFixedThreadPool(parsers);
+        try {
+            reader.start();
+            for (int i = 0; i < parsers; i++) {
+                parserPool.execute(new Runnable() {
+                    public void run() {
+                        parse();
+                    }
+                });
+            }
+            aggregate(results);
+            metrics.addParseTime(getParseSpan());
+        } catch (InterruptedException e) {
+            fail(e);
+            Thread.currentThread().interrupt();
+        } finally {
+            parserPool.shutdownNow();
+            reader.interrupt();
+        }
+        rethrowFailure();
+    }
+
+    private void read(final ClassSource source) {
+        try {
+            long start = System.nanoTime();
+            ClassSource.ClassData data;
+            while ((failure.get() == null) && ((data = source.next()) != null)) {
+                if (null != data.cached) {
+                    metrics.addRead(System.nanoTime() - start, data.length);
+                    if (!data.cached.isEmpty()) {
+                        found.put(data.cached);
+                    }
+                } else if (!scanner.prefilter(data.bytes, data.length, metrics)) {
+                    if ((null != cache) && (null != data.file)) {
+                        cache.put(data.file, data.checksum, Collections.<AnnotationInformation>emptyList());
+                    }
+                    metrics.addRead(System.nanoTime() - start, data.length);
+                } else {
+                    final ClassSource.ClassData copy = data.copy();
+                    metrics.addRead(System.nanoTime() - start, data.length);
+                    offer(copy);
+                }
+                start = System.nanoTime();
+            }
+        } catch (Throwable t) {
+            fail(t);
+        } finally {
+            try {
+                source.close();
+            } catch (IOException e) {
+                fail(e);
+            }
+            try {
+                for (int i = 0; i < parsers; i++) {
+                    offer(END_OF_CLASSES);
+                }
+            } catch (InterruptedException e) {
+                fail(e);
+            }
+        }
+    }
+
+    private void parse() {
+        boolean parsed = false;
+        long first = 0;
+        long last = 0;
+        try {
+            ClassSource.ClassData data;
+            while ((data = poll()) != null) {
+                final long start = System.nanoTime();
+                if (!parsed) {
+                    parsed = true;
+                    first = start;
+                }
+                final List<AnnotationInformation> classResults = scanner.parseClass(data.bytes, data.length, metrics);
+                if ((null != cache) && (null != data.file)) {
+                    cache.put(data.file, data.checksum, classResults);
+                }
+                last = System.nanoTime();
+                if (!classResults.isEmpty()) {
+                    found.put(classResults);
+                }
+            }
+        } catch (Throwable t) {
+            fail(t);
+        } finally {
+            if (parsed) {
+                addParseSpan(first, last);
+            }
+            try {
+                found.put(END_OF_RESULTS);
+            } catch (InterruptedException e) {
+                fail(e);
+            }
+        }
+    }
+
+    /**
+     * Widen the parse stage to cover the classes one parser worked on.
+     */
+    private synchronized void addParseSpan(final long first, final long last) {
+        if (!parsing || (first - parseStart < 0)) {
+            parseStart = first;
+        }
+        if (!parsing || (last - parseEnd > 0)) {
+            parseEnd = last;
+        }
+        parsing = true;
+    }
+
+    private synchronized long getParseSpan() {
+        return parsing ? parseEnd - parseStart : 0;
+    }
+
+    private void aggregate(final AnnotationScanResults results) throws InterruptedException {
+        int finishedParsers = 0;
+        while (finishedParsers < parsers) {
+            final List<AnnotationInformation> classResults = found.take();
+            if (classResults == END_OF_RESULTS) {
+                finishedParsers++;
+                continue;
+            }
+            final long start = System.nanoTime();
+            AnnotationScanner.addResults(results, classResults);
+            metrics.addAggregate(System.nanoTime() - start, classResults.size());
+        }
+    }
+
+    /**
+     * Hand a class to the parsers, giving up if another stage has failed.
+     */
+    private void offer(final ClassSource.ClassData data) throws InterruptedException {
+        while (!classes.offer(data, POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+            if (failure.get() != null) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Take the next class to parse.
+     * @return Next class, or null when there are no more classes or another stage has failed
+     */
+    private ClassSource.ClassData poll() throws InterruptedException {
+        while (failure.get() == null) {
+            final ClassSource.ClassData data = classes.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+            if (data == END_OF_CLASSES) {
+                return null;
+            } else if (data != null) {
+                return data;
+            }
+        }
+        return null;
+    }
+
+    private void fail(final Throwable t) {
+        failure.compareAndSet(null, t);
+    }
+
+    private void rethrowFailure() throws IOException, AnnotationScanException {
+        final Throwable t = failure.get();
+        if (null == t) {
+            return;
+        }
+        if (t instanceof IOException) {
+            throw (IOException) t;
+        } else if (t instanceof AnnotationScanException) {
+            throw (AnnotationScanException) t;
+        } else if (t instanceof InterruptedException) {
+            final InterruptedIOException e = new InterruptedIOException("Scan was interrupted");
+            e.initCause(t);
+            throw e;
+        } else if (t instanceof RuntimeException) {
+            throw (RuntimeException) t;
+        } else if (t instanceof Error) {
+            throw (Error) t;
+        }
+        throw new AnnotationScanException(t);
+    }
+}
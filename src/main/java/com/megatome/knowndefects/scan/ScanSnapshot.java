@@ -0,0 +1,268 @@
+/*******************************************************************************
+ * Copyright (c) 2011-2013 Megatome Technologies
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.megatome.knowndefects.scan;
+
+import com.megatome.knowndefects.info.AnnotationInformation;
+import com.megatome.knowndefects.info.AnnotationInformationFactory;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Reads and writes a binary snapshot of scan results, so results can be reused without scanning any class
+ * files again, i.e. to cache released artifacts or to aggregate the results of every module in a reactor.
+ * <p>Every string is stored once in a string table and everything else is a fixed size record of big endian
+ * ints referring to it, so a snapshot is read from a memory mapped file without parsing:</p>
+ * <pre>
+ * header   magic, version, string count, record count, member count
+ * strings  string count x (byte length, UTF-8 bytes)
+ * records  record count x (annotation type, class name, method name, line number, first member, member count)
+ * members  member count x (name, value)
+ * </pre>
+ * <p>String references are indexes into the string table, or -1 for null. Records are written in package,
+ * class and method order with their members in the order the annotation reports them, so reading a snapshot
+ * and writing it again produces the same bytes.</p>
+ */
+public class ScanSnapshot {
+    private static final int MAGIC = 0x4B445331;
+    private static final int VERSION = 3;
+    private static final int HEADER_INTS = 5;
+    private static final int RECORD_INTS = 6;
+    private static final int MEMBER_INTS = 2;
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private ScanSnapshot() {}
+
+    /**
+     * Write a snapshot. The snapshot is written to a temporary file first and then moved into place, so a
+     * concurrent reader never sees a partial snapshot.
+     * @param file File to write
+     * @param results Results to write
+     * @throws IOException If the snapshot cannot be written
+     */
+    public static void write(final File file, final AnnotationScanResults results) throws IOException {
+        final List<AnnotationInformation> annotations = new ArrayList<AnnotationInformation>();
+        for (final PackageScanResults packageScanResults : results.getAllResults()) {
+            for (final String className : packageScanResults.getClassNames()) {
+                annotations.addAll(packageScanResults.getClassResults(className).getAnnotations());
+            }
+        }
+        final StringTable strings = new StringTable();
+        final int[] records = new int[annotations.size() * RECORD_INTS];
+        final List<Integer> members = new ArrayList<Integer>();
+        int r = 0;
+        for (final AnnotationInformation info : annotations) {
+            final List<String> methodNames = info.getMethodNames();
+            records[r++] = strings.add(info.getAnnotationName());
+            records[r++] = strings.add(info.getClassName());
+            records[r++] = strings.add(info.getMethodName());
+            records[r++] = info.getLineNumber();
+            records[r++] = members.size() / MEMBER_INTS;
+            records[r++] = methodNames.size();
+            for (final String methodName : methodNames) {
+                members.add(strings.add(methodName));
+                members.add(strings.add(info.getMethodValue(methodName)));
+            }
+        }
+
+        final File parent = file.getAbsoluteFile().getParentFile();
+        if (!parent.exists() && !parent.mkdirs()) {
+            throw new IOException("Could not create snapshot directory " + parent);
+        }
+        final File temp = File.createTempFile(file.getName(), ".tmp", parent);
+        try {
+            final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+            try {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(strings.size());
+                out.writeInt(annotations.size());
+                out.writeInt(members.size() / MEMBER_INTS);
+                for (final byte[] bytes : strings.encoded) {
+                    out.writeInt(bytes.length);
+                    out.write(bytes);
+                }
+                for (final int value : records) {
+                    out.writeInt(value);
+                }
+                for (final Integer value : members) {
+                    out.writeInt(value);
+                }
+            } finally {
+                out.close();
+            }
+            if (!temp.renameTo(file) && !(file.delete() && temp.renameTo(file))) {
+                throw new IOException("Could not write snapshot " + file);
+            }
+        } finally {
+            temp.delete();
+        }
+    }
+
+    /**
+     * Read a snapshot.
+     * @param file File to read
+     * @return Results held in the snapshot
+     * @throws IOException If the file cannot be read or is not a snapshot of a supported version
+     */
+    public static AnnotationScanResults read(final File file) throws IOException {
+        final ByteBuffer buffer;
+        final FileInputStream in = new FileInputStream(file);
+        try {
+            final FileChannel channel = in.getChannel();
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } finally {
+            in.close();
+        }
+        try {
+            return read(buffer);
+        } catch (RuntimeException e) {
+            // A truncated or corrupt snapshot surfaces as a buffer underflow or a bad index
+            throw new IOException("Corrupt snapshot " + file, e);
+        }
+    }
+
+    private static AnnotationScanResults read(final ByteBuffer buffer) throws IOException {
+        if ((buffer.remaining() < HEADER_INTS * 4) || (buffer.getInt() != MAGIC) || (buffer.getInt() != VERSION)) {
+            throw new IOException("Unsupported snapshot format");
+        }
+        final String[] strings = new String[buffer.getInt()];
+        final int recordCount = buffer.getInt();
+        final int memberCount = buffer.getInt();
+        byte[] bytes = new byte[256];
+        for (int i = 0; i < strings.length; i++) {
+            final int length = buffer.getInt();
+            if (length > bytes.length) {
+                bytes = new byte[Math.max(length, bytes.length * 2)];
+            }
+            buffer.get(bytes, 0, length);
+            strings[i] = new String(bytes, 0, length, UTF8);
+        }
+
+        final int membersStart = buffer.position() + recordCount * RECORD_INTS * 4;
+        if (membersStart + memberCount * MEMBER_INTS * 4 != buffer.limit()) {
+            throw new IOException("Snapshot size does not match its header");
+        }
+        final AnnotationScanResults results = new AnnotationScanResults();
+        for (int i = 0; i < recordCount; i++) {
+            final AnnotationInformation info = AnnotationInformationFactory.createInformation(string(strings, buffer.getInt()));
+            if (null == info) {
+                throw new IOException("Unknown annotation type in snapshot");
+            }
+            info.setClassName(string(strings, buffer.getInt()));
+            info.setMethodName(string(strings, buffer.getInt()));
+            info.setLineNumber(buffer.getInt());
+            final int firstMember = buffer.getInt();
+            final int members = buffer.getInt();
+            for (int m = 0; m < members; m++) {
+                final int position = membersStart + (firstMember + m) * MEMBER_INTS * 4;
+                info.setMethodValue(string(strings, buffer.getInt(position)), string(strings, buffer.getInt(position + 4)));
+            }
+            results.addResult(info.getClassName(), info);
+        }
+        return results;
+    }
+
+    private static String string(final String[] strings, final int index) {
+        return (index < 0) ? null : strings[index];
+    }
+
+    /**
+     * Read a number of snapshots and merge them into a single set of results. Each thread reads snapshots and
+     * merges them into its own partial results, and the partial results are merged at the end.
+     * @param files Snapshot files to read
+     * @param threads Number of threads. A value less than 1 uses the number of available processors.
+     * @return Merged results
+     * @throws IOException If a snapshot cannot be read
+     */
+    public static AnnotationScanResults readAll(final List<File> files, final int threads) throws IOException {
+        final int workers = Math.max(1, Math.min(files.size(),
+                (threads < 1) ? Runtime.getRuntime().availableProcessors() : threads));
+        final AtomicInteger next = new AtomicInteger();
+        final ExecutorService executor = Executors.newFixedThreadPool(workers);
+        try {
+            final List<Future<AnnotationScanResults>> partials = new ArrayList<Future<AnnotationScanResults>>();
+            for (int i = 0; i < workers; i++) {
+                partials.add(executor.submit(new Callable<AnnotationScanResults>() {
+                    public AnnotationScanResults call() throws IOException {
+                        final AnnotationScanResults partial = new AnnotationScanResults();
+                        int index;
+                        while ((index = next.getAndIncrement()) < files.size()) {
+                            partial.merge(read(files.get(index)));
+                        }
+                        return partial;
+                    }
+                }));
+            }
+            final AnnotationScanResults results = new AnnotationScanResults();
+            for (final Future<AnnotationScanResults> partial : partials) {
+                results.merge(partial.get());
+            }
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            final InterruptedIOException ex = new InterruptedIOException("Reading snapshots was interrupted");
+            ex.initCause(e);
+            throw ex;
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException(cause);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Strings in the order they were first added, each with its index.
+     */
+    private static class StringTable {
+        private final Map<String, Integer> indexes = new HashMap<String, Integer>();
+        private final List<byte[]> encoded = new ArrayList<byte[]>();
+
+        int add(final String value) {
+            if (null == value) {
+                return -1;
+            }
+            Integer index = indexes.get(value);
+            if (null == index) {
+                index = encoded.size();
+                indexes.put(value, index);
+                encoded.add(value.getBytes(UTF8));
+            }
+            return index;
+        }
+
+        int size() {
+            return encoded.size();
+        }
+    }
+}
@@ -0,0 +1,522 @@
+/*******************************************************************************
+ * Copyright (c) 2011-2013 Megatome Technologies
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.megatome.knowndefects.scan;
+
+import com.megatome.knowndefects.info.AnnotationInformation;
+import com.megatome.knowndefects.info.AnnotationInformationFactory;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Parser that reads the class file bytes directly and decodes only what the report needs: the class name and
+ * the name, annotations and first line number of annotated methods. Fields, method code, stack map frames and
+ * debug information are stepped over by their lengths. The line number table is only read for methods that
+ * carry one of the annotations.
+ * <p>Member values are read straight from their constant pool entries.</p>
+ */
+class SkipCodeClassParser implements ClassParser {
+    private static final int MAGIC = 0xCAFEBABE;
+
+    private static final int CONSTANT_UTF8 = 1;
+    private static final int CONSTANT_INTEGER = 3;
+    private static final int CONSTANT_FLOAT = 4;
+    private static final int CONSTANT_LONG = 5;
+    private static final int CONSTANT_DOUBLE = 6;
+    private static final int CONSTANT_CLASS = 7;
+    private static final int CONSTANT_STRING = 8;
+    private static final int CONSTANT_FIELDREF = 9;
+    private static final int CONSTANT_METHODREF = 10;
+    private static final int CONSTANT_INTERFACE_METHODREF = 11;
+    private static final int CONSTANT_NAME_AND_TYPE = 12;
+    private static final int CONSTANT_METHOD_HANDLE = 15;
+    private static final int CONSTANT_METHOD_TYPE = 16;
+    private static final int CONSTANT_DYNAMIC = 17;
+    private static final int CONSTANT_INVOKE_DYNAMIC = 18;
+    private static final int CONSTANT_MODULE = 19;
+    private static final int CONSTANT_PACKAGE = 20;
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final byte[] VISIBLE_ANNOTATIONS = "RuntimeVisibleAnnotations".getBytes(UTF8);
+    private static final byte[] INVISIBLE_ANNOTATIONS = "RuntimeInvisibleAnnotations".getBytes(UTF8);
+    private static final byte[] CODE = "Code".getBytes(UTF8);
+    private static final byte[] LINE_NUMBER_TABLE = "LineNumberTable".getBytes(UTF8);
+
+    private final byte[][] descriptors;
+    private final String[] types;
+
+    SkipCodeClassParser(final Set<String> classTypes) {
+        descriptors = new byte[classTypes.size()][];
+        types = new String[classTypes.size()];
+        int i = 0;
+        for (final String type : classTypes) {
+            descriptors[i] = ("L" + type.replace('.', '/') + ";").getBytes(UTF8);
+            types[i++] = type;
+        }
+    }
+
+    public List<AnnotationInformation> parse(final byte[] bytes, final int length, final ScanMetrics metrics) throws IOException {
+        final ClassReader reader = new ClassReader(bytes, length);
+        if (!reader.hasAnnotations()) {
+            return Collections.emptyList();
+        }
+        int offset = reader.poolEnd + 6;
+        offset += 2 + 2 * reader.u2(offset);
+        final int fieldCount = reader.u2(offset);
+        offset += 2;
+        for (int i = 0; i < fieldCount; i++) {
+            offset = reader.skipAttributes(offset + 6);
+        }
+        final List<AnnotationInformation> found = new ArrayList<AnnotationInformation>();
+        int annotatedMethods = 0;
+        int lineNumbers = 0;
+        final int methodCount = reader.u2(offset);
+        offset += 2;
+        for (int i = 0; i < methodCount; i++) {
+            final int nameIndex = reader.u2(offset + 2);
+            final int attributeCount = reader.u2(offset + 6);
+            offset += 8;
+            int visible = -1;
+            int invisible = -1;
+            int code = -1;
+            for (int a = 0; a < attributeCount; a++) {
+                final int attributeName = reader.u2(offset);
+                final int body = offset + 6;
+                offset = body + reader.u4(offset + 2);
+                reader.check(offset);
+                if ((attributeName == reader.visibleIndex) && (visible < 0)) {
+                    visible = body;
+                } else if ((attributeName == reader.invisibleIndex) && (invisible < 0)) {
+                    invisible = body;
+                } else if ((attributeName == reader.codeIndex) && (code < 0)) {
+                    code = body;
+                }
+            }
+            if ((visible < 0) && (invisible < 0)) {
+                continue;
+            }
+            annotatedMethods++;
+
+            final int matched = found.size();
+            if (visible >= 0) populate(reader, visible, nameIndex, found);
+            if (invisible >= 0) populate(reader, invisible, nameIndex, found);
+            if (found.size() > matched) {
+                final int lineNumber = reader.lineNumber(code);
+                lineNumbers++;
+                for (int m = matched; m < found.size(); m++) {
+                    found.get(m).setLineNumber(lineNumber);
+                }
+            }
+        }
+        metrics.addMethods(annotatedMethods, lineNumbers);
+        return found;
+    }
+
+    private void populate(final ClassReader reader, int offset, final int nameIndex, final List<AnnotationInformation> found) throws IOException {
+        final int count = reader.u2(offset);
+        offset += 2;
+        for (int i = 0; i < count; i++) {
+            final String annotationClass = reader.annotationType(reader.u2(offset));
+            final int pairs = reader.u2(offset + 2);
+            offset += 4;
+            if (null == annotationClass) {
+                for (int p = 0; p < pairs; p++) {
+                    offset = reader.skipElementValue(offset + 2);
+                }
+                continue;
+            }
+            final AnnotationInformation info = AnnotationInformationFactory.createInformation(annotationClass);
+            info.setClassName(reader.className());
+            info.setMethodName(reader.utf8(nameIndex));
+            final StringBuilder value = new StringBuilder();
+            for (int p = 0; p < pairs; p++) {
+                final String memberName = reader.utf8(reader.u2(offset));
+                offset += 2;
+                if (reader.u1(offset) == 's') {
+                    info.setMethodValue(memberName, reader.utf8(reader.u2(offset + 1)));
+                    offset += 3;
+                } else {
+                    value.setLength(0);
+                    offset = reader.formatElementValue(offset, value);
+                    info.setMethodValue(memberName, value.toString());
+                }
+            }
+            found.add(info);
+        }
+    }
+
+    /**
+     * Position independent access to the bytes of a single class file. Every read is checked against the length
+     * of the class, so a truncated class fails with an exception rather than reading stale buffer contents.
+     */
+    private final class ClassReader {
+        private final byte[] bytes;
+        private final int length;
+        private final int[] offsets;
+        private final String[] annotationTypes;
+        private final int poolEnd;
+        private int visibleIndex;
+        private int invisibleIndex;
+        private int codeIndex;
+        private int lineNumbersIndex;
+        private boolean typeFound = false;
+        private String className;
+
+        ClassReader(final byte[] bytes, final int length) throws IOException {
+            this.bytes = bytes;
+            this.length = length;
+            if (u4(0) != MAGIC) {
+                throw new IOException("Not a class file");
+            }
+            final int count = u2(8);
+            offsets = new int[count];
+            annotationTypes = new String[count];
+            int offset = 10;
+            for (int index = 1; index < count; index++) {
+                offsets[index] = offset;
+                final int tag = u1(offset);
+                switch (tag) {
+                    case CONSTANT_UTF8:
+                        final int utfLength = u2(offset + 1);
+                        check(offset + 3 + utfLength);
+                        classify(index, offset + 3, utfLength);
+                        offset += 3 + utfLength;
+                        break;
+                    case CONSTANT_CLASS:
+                    case CONSTANT_STRING:
+                    case CONSTANT_METHOD_TYPE:
+                    case CONSTANT_MODULE:
+                    case CONSTANT_PACKAGE:
+                        offset += 3;
+                        break;
+                    case CONSTANT_METHOD_HANDLE:
+                        offset += 4;
+                        break;
+                    case CONSTANT_INTEGER:
+                    case CONSTANT_FLOAT:
+                    case CONSTANT_FIELDREF:
+                    case CONSTANT_METHODREF:
+                    case CONSTANT_INTERFACE_METHODREF:
+                    case CONSTANT_NAME_AND_TYPE:
+                    case CONSTANT_DYNAMIC:
+                    case CONSTANT_INVOKE_DYNAMIC:
+                        offset += 5;
+                        break;
+                    case CONSTANT_LONG:
+                    case CONSTANT_DOUBLE:
+                        offset += 9;
+                        index++;
+                        break;
+                    default:
+                        throw new IOException("Unknown constant pool tag " + tag);
+                }
+            }
+            poolEnd = offset;
+        }
+
+        private void classify(final int index, final int offset, final int utfLength) {
+            if (equal(VISIBLE_ANNOTATIONS, offset, utfLength)) {
+                visibleIndex = index;
+            } else if (equal(INVISIBLE_ANNOTATIONS, offset, utfLength)) {
+                invisibleIndex = index;
+            } else if (equal(CODE, offset, utfLength)) {
+                codeIndex = index;
+            } else if (equal(LINE_NUMBER_TABLE, offset, utfLength)) {
+                lineNumbersIndex = index;
+            } else {
+                for (int i = 0; i < descriptors.length; i++) {
+                    if (equal(descriptors[i], offset, utfLength)) {
+                        annotationTypes[index] = types[i];
+                        typeFound = true;
+                    }
+                }
+            }
+        }
+
+        private boolean equal(final byte[] expected, final int offset, final int utfLength) {
+            if (expected.length != utfLength) {
+                return false;
+            }
+            for (int i = 0; i < utfLength; i++) {
+                if (bytes[offset + i] != expected[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        boolean hasAnnotations() {
+            return typeFound && ((visibleIndex != 0) || (invisibleIndex != 0));
+        }
+
+        String annotationType(final int index) throws IOException {
+            checkIndex(index);
+            return annotationTypes[index];
+        }
+
+        String className() throws IOException {
+            if (null == className) {
+                final int classIndex = u2(poolEnd + 2);
+                checkIndex(classIndex);
+                className = utf8(u2(offsets[classIndex] + 1)).replace('/', '.');
+            }
+            return className;
+        }
+
+        /**
+         * Get the line number of the first instruction of a method, the same way javassist does.
+         * @param code Offset of the code attribute body, or -1 if the method has no code
+         * @return Line number, or -1 if the method has no line number table
+         * @throws IOException If the code attribute is truncated
+         */
+        int lineNumber(final int code) throws IOException {
+            if ((code < 0) || (lineNumbersIndex == 0)) {
+                return -1;
+            }
+            int offset = code + 8 + u4(code + 4);
+            offset += 2 + 8 * u2(offset);
+            final int attributeCount = u2(offset);
+            offset += 2;
+            for (int a = 0; a < attributeCount; a++) {
+                if (u2(offset) == lineNumbersIndex) {
+                    final int entries = u2(offset + 6);
+                    if (entries == 0) {
+                        return -1;
+                    }
+                    int i = 0;
+                    while ((i < entries) && (u2(offset + 8 + 4 * i) == 0)) {
+                        i++;
+                    }
+                    return u2(offset + 8 + 4 * Math.max(0, i - 1) + 2);
+                }
+                offset += 6 + u4(offset + 2);
+            }
+            return -1;
+        }
+
+        int skipAttributes(int offset) throws IOException {
+            final int count = u2(offset);
+            offset += 2;
+            for (int i = 0; i < count; i++) {
+                offset += 6 + u4(offset + 2);
+            }
+            check(offset);
+            return offset;
+        }
+
+        int skipElementValue(final int offset) throws IOException {
+            final int tag = u1(offset);
+            switch (tag) {
+                case 'e':
+                    return offset + 5;
+                case '@':
+                    int annotation = offset + 5;
+                    for (int p = u2(offset + 3); p > 0; p--) {
+                        annotation = skipElementValue(annotation + 2);
+                    }
+                    return annotation;
+                case '[':
+                    int element = offset + 3;
+                    for (int e = u2(offset + 1); e > 0; e--) {
+                        element = skipElementValue(element);
+                    }
+                    return element;
+                default:
+                    return offset + 3;
+            }
+        }
+
+        /**
+         * Append an element value, as described by {@link ClassParser}.
+         * @param offset Offset of the element value
+         * @param out Builder to append to
+         * @return Offset after the element value
+         * @throws IOException If the value cannot be read
+         */
+        int formatElementValue(final int offset, final StringBuilder out) throws IOException {
+            final int tag = u1(offset);
+            switch (tag) {
+                case 'B':
+                    out.append((byte) intConstant(u2(offset + 1)));
+                    return offset + 3;
+                case 'C':
+                    out.append((char) intConstant(u2(offset + 1)));
+                    return offset + 3;
+                case 'S':
+                    out.append((short) intConstant(u2(offset + 1)));
+                    return offset + 3;
+                case 'I':
+                    out.append(intConstant(u2(offset + 1)));
+                    return offset + 3;
+                case 'Z':
+                    out.append(intConstant(u2(offset + 1)) != 0);
+                    return offset + 3;
+                case 'J':
+                    out.append(longConstant(u2(offset + 1)));
+                    return offset + 3;
+                case 'F':
+                    out.append(Float.intBitsToFloat(intConstant(u2(offset + 1))));
+                    return offset + 3;
+                case 'D':
+                    out.append(Double.longBitsToDouble(longConstant(u2(offset + 1))));
+                    return offset + 3;
+                case 's':
+                    out.append(utf8(u2(offset + 1)));
+                    return offset + 3;
+                case 'e':
+                    out.append(utf8(u2(offset + 3)));
+                    return offset + 5;
+                case 'c':
+                    out.append(toClassName(utf8(u2(offset + 1))));
+                    return offset + 3;
+                case '@':
+                    out.append('@').append(toClassName(utf8(u2(offset + 1))));
+                    final int pairs = u2(offset + 3);
+                    int annotation = offset + 5;
+                    if (pairs > 0) {
+                        out.append('(');
+                        for (int p = 0; p < pairs; p++) {
+                            if (p > 0) {
+                                out.append(", ");
+                            }
+                            out.append(utf8(u2(annotation))).append('=');
+                            annotation = formatElementValue(annotation + 2, out);
+                        }
+                        out.append(')');
+                    }
+                    return annotation;
+                case '[':
+                    final int count = u2(offset + 1);
+                    int element = offset + 3;
+                    for (int e = 0; e < count; e++) {
+                        if (e > 0) {
+                            out.append(", ");
+                        }
+                        element = formatElementValue(element, out);
+                    }
+                    return element;
+                default:
+                    throw new IOException("Unknown element value tag " + tag);
+            }
+        }
+
+        String utf8(final int index) throws IOException {
+            checkIndex(index);
+            final int offset = offsets[index];
+            if (u1(offset) != CONSTANT_UTF8) {
+                throw new IOException("Constant " + index + " is not a UTF8 constant");
+            }
+            final int utfLength = u2(offset + 1);
+            final char[] chars = new char[utfLength];
+            int count = 0;
+            int i = offset + 3;
+            final int end = i + utfLength;
+            while (i < end) {
+                final int c = bytes[i++] & 0xFF;
+                if (c < 0x80) {
+                    chars[count++] = (char) c;
+                } else if ((c >> 5) == 0x06) {
+                    chars[count++] = (char) (((c & 0x1F) << 6) | (bytes[i++] & 0x3F));
+                } else {
+                    chars[count++] = (char) (((c & 0x0F) << 12) | ((bytes[i++] & 0x3F) << 6) | (bytes[i++] & 0x3F));
+                }
+            }
+            return new String(chars, 0, count);
+        }
+
+        private int intConstant(final int index) throws IOException {
+            checkIndex(index);
+            return u4(offsets[index] + 1);
+        }
+
+        private long longConstant(final int index) throws IOException {
+            checkIndex(index);
+            return ((long) u4(offsets[index] + 1) << 32) | (u4(offsets[index] + 5) & 0xFFFFFFFFL);
+        }
+
+        int u1(final int offset) throws IOException {
+            check(offset + 1);
+            return bytes[offset] & 0xFF;
+        }
+
+        int u2(final int offset) throws IOException {
+            check(offset + 2);
+            return ((bytes[offset] & 0xFF) << 8) | (bytes[offset + 1] & 0xFF);
+        }
+
+        int u4(final int offset) throws IOException {
+            check(offset + 4);
+            return ((bytes[offset] & 0xFF) << 24) | ((bytes[offset + 1] & 0xFF) << 16)
+                    | ((bytes[offset + 2] & 0xFF) << 8) | (bytes[offset + 3] & 0xFF);
+        }
+
+        void check(final int end) throws IOException {
+            if ((end > length) || (end < 0)) {
+                throw new IOException("Truncated class file");
+            }
+        }
+
+        private void checkIndex(final int index) throws IOException {
+            if ((index < 1) || (index >= offsets.length) || (offsets[index] == 0)) {
+                throw new IOException("Invalid constant pool index " + index);
+            }
+        }
+    }
+
+    /**
+     * Convert a field descriptor to a class name the way javassist does, i.e. <code>[Ljava/lang/String;</code>
+     * becomes <code>java.lang.String[]</code>.
+     * @param descriptor Descriptor
+     * @return Class name
+     */
+    static String toClassName(final String descriptor) {
+        int dims = 0;
+        while ((dims < descriptor.length()) && (descriptor.charAt(dims) == '[')) {
+            dims++;
+        }
+        if (dims == descriptor.length()) {
+            return descriptor;
+        }
+        final String name;
+        switch (descriptor.charAt(dims)) {
+            case 'L':
+                final int end = descriptor.indexOf(';', dims);
+                name = descriptor.substring(dims + 1, (end < 0) ? descriptor.length() : end).replace('/', '.');
+                break;
+            case 'Z': name = "boolean"; break;
+            case 'B': name = "byte"; break;
+            case 'C': name = "char"; break;
+            case 'S': name = "short"; break;
+            case 'I': name = "int"; break;
+            case 'J': name = "long"; break;
+            case 'F': name = "float"; break;
+            case 'D': name = "double"; break;
+            case 'V': name = "void"; break;
+            default:
+                return descriptor;
+        }
+        final StringBuilder result = new StringBuilder(name);
+        for (int i = 0; i < dims; i++) {
+            result.append("[]");
+        }
+        return result.toString();
+    }
+}
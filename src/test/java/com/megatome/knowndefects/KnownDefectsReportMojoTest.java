@@ -0,0 +1,157 @@
+package com.megatome.knowndefects;
+
+import com.megatome.knowndefects.report.JsonReportWriter;
+import com.megatome.knowndefects.scan.AnnotationScanResults;
+import com.megatome.knowndefects.scan.ScanDiff;
+import javassist.bytecode.AnnotationsAttribute;
+import javassist.bytecode.ClassFile;
+import javassist.bytecode.ConstPool;
+import javassist.bytecode.MethodInfo;
+import javassist.bytecode.annotation.Annotation;
+import javassist.bytecode.annotation.StringMemberValue;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.lang.reflect.Field;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertTrue;
+
+public class KnownDefectsReportMojoTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testUnchangedRerunHasEmptyDiff() throws Exception {
+        final File classes = folder.newFolder("test-classes");
+        writeFile(new File(classes, "pkg/ModuleTest.class"), createClass("pkg.ModuleTest"));
+        final File archive = folder.newFile("fixtures-tests.jar");
+        final ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(archive));
+        try {
+            zip.putNextEntry(new ZipEntry("fixtures/ArchiveTest.class"));
+            zip.write(createClass("fixtures.ArchiveTest"));
+            zip.closeEntry();
+        } finally {
+            zip.close();
+        }
+
+        final File snapshot = new File(folder.getRoot(), "target/knowndefects/scan.snapshot");
+        final File site = folder.newFolder("site");
+        final KnownDefectsReportMojo mojo = new KnownDefectsReportMojo();
+        set(mojo, "snapshotFile", snapshot);
+        set(mojo, "sourceRoots", Collections.singletonList(classes.getPath()));
+        set(mojo, "archives", Collections.singletonList(archive.getPath()));
+        set(mojo, "outputDirectory", site);
+        set(mojo, "scanCacheFile", new File(folder.getRoot(), "scan.cache"));
+        set(mojo, "format", AbstractKnownDefectsReportMojo.JSON);
+        set(mojo, "parser", "javassist");
+        set(mojo, "scanThreads", 1);
+        set(mojo, "reportThreads", 1);
+
+        mojo.executeReport(Locale.ENGLISH);
+        final String report = read(new File(site, "knowndefects/knowndefects.json"));
+        assertTrue(report.contains("ModuleTest"));
+        assertTrue(report.contains("ArchiveTest"));
+
+        final File baseline = new File(folder.getRoot(), "baseline.snapshot");
+        writeFile(baseline, read(snapshot).getBytes("ISO-8859-1"));
+        set(mojo, "baselineFile", baseline);
+        mojo.executeReport(Locale.ENGLISH);
+
+        final StringWriter empty = new StringWriter();
+        new JsonReportWriter().writeDiff(empty, ScanDiff.compare(new AnnotationScanResults(), new AnnotationScanResults()));
+        assertEquals(empty.toString(), read(new File(site, "knowndefects/knowndefects-diff.json")));
+    }
+
+    @Test
+    public void testBaselineFromOwnSnapshot() throws Exception {
+        final File classes = folder.newFolder("test-classes");
+        writeFile(new File(classes, "pkg/ModuleTest.class"), createClass("pkg.ModuleTest"));
+        final File snapshot = new File(folder.getRoot(), "target/knowndefects/scan.snapshot");
+        final File site = folder.newFolder("site");
+        final KnownDefectsReportMojo mojo = new KnownDefectsReportMojo();
+        set(mojo, "snapshotFile", snapshot);
+        set(mojo, "sourceRoots", Collections.singletonList(classes.getPath()));
+        set(mojo, "outputDirectory", site);
+        set(mojo, "scanCacheFile", new File(folder.getRoot(), "scan.cache"));
+        set(mojo, "format", AbstractKnownDefectsReportMojo.JSON);
+        set(mojo, "parser", "javassist");
+        set(mojo, "scanThreads", 1);
+        set(mojo, "reportThreads", 1);
+        mojo.executeReport(Locale.ENGLISH);
+
+        writeFile(new File(classes, "pkg/AddedTest.class"), createClass("pkg.AddedTest"));
+        set(mojo, "baselineFile", snapshot);
+        mojo.executeReport(Locale.ENGLISH);
+
+        final String diff = read(new File(site, "knowndefects/knowndefects-diff.json"));
+        final String added = diff.substring(0, diff.indexOf(",\"removed\":"));
+        assertTrue(added.contains("AddedTest"));
+        assertFalse(diff.contains("ModuleTest"));
+    }
+
+    private static void set(final Object target, final String name, final Object value) throws Exception {
+        final Field field = AbstractKnownDefectsReportMojo.class.getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(target, value);
+    }
+
+    private static byte[] createClass(final String className) throws Exception {
+        final ClassFile cf = new ClassFile(false, className, null);
+        final ConstPool cp = cf.getConstPool();
+        final MethodInfo method = new MethodInfo(cp, "testBroken", "()V");
+        final AnnotationsAttribute attribute = new AnnotationsAttribute(cp, AnnotationsAttribute.visibleTag);
+        final Annotation annotation = new Annotation(Constants.KNOWN_DEFECT_ANNOTATION_CLASS, cp);
+        annotation.addMemberValue("value", new StringMemberValue("Broken in " + className, cp));
+        attribute.addAnnotation(annotation);
+        method.addAttribute(attribute);
+        cf.addMethod(method);
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final DataOutputStream out = new DataOutputStream(bytes);
+        cf.write(out);
+        out.close();
+        return bytes.toByteArray();
+    }
+
+    private static void writeFile(final File file, final byte[] bytes) throws IOException {
+        if (!file.getParentFile().exists() && !file.getParentFile().mkdirs()) {
+            throw new IOException("Could not create " + file.getParentFile());
+        }
+        final OutputStream out = new FileOutputStream(file);
+        try {
+            out.write(bytes);
+        } finally {
+            out.close();
+        }
+    }
+
+    private static String read(final File file) throws IOException {
+        final InputStream in = new FileInputStream(file);
+        try {
+            final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            final byte[] buffer = new byte[4096];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                bytes.write(buffer, 0, read);
+            }
+            return bytes.toString("ISO-8859-1");
+        } finally {
+            in.close();
+        }
+    }
+}
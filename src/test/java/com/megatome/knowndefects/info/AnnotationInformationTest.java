@@ -3,11 +3,15 @@ package com.megatome.knowndefects.info;
 import org.junit.Test;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 
 import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertSame;
 import static junit.framework.Assert.assertTrue;
+import static junit.framework.Assert.fail;
 
 public class AnnotationInformationTest {
     @Test
@@ -29,4 +33,43 @@ public class AnnotationInformationTest {
         assertTrue(list.contains(information));
         assertEquals(1, list.indexOf(information));
     }
+
+    @Test
+    public void testMemberValues() {
+        final KnownAcceptedDefectInformation information = new KnownAcceptedDefectInformation();
+        assertTrue(information.getMethodNames().isEmpty());
+
+        information.setMethodValue("reason", "Flaky");
+        information.setMethodValue("author", "cjohnston");
+        assertEquals(Arrays.asList("author", "reason"), information.getMethodNames());
+        final KnownAcceptedDefectInformation other = new KnownAcceptedDefectInformation();
+        other.setMethodValue("author", "someone");
+        other.setMethodValue("reason", "Slow");
+        assertSame(information.getMethodNames(), other.getMethodNames());
+        assertEquals("cjohnston", information.getAuthor());
+        assertEquals("Flaky", information.getReason());
+        assertNull(information.getDate());
+
+        information.setMethodValue("extra", "one");
+        information.setMethodValue("date", "2013-01-01");
+        assertEquals(Arrays.asList("author", "date", "reason", "extra"), information.getMethodNames());
+        assertEquals("one", information.getMethodValue("extra"));
+        assertNull(information.getMethodValue("missing"));
+    }
+
+    @Test
+    public void testMethodNamesAreReadOnly() {
+        final KnownDefectInformation information = new KnownDefectInformation();
+        information.setMethodValue("value", "Broken");
+        information.setMethodValue("extra", "one");
+        for (final AnnotationInformation info : Arrays.<AnnotationInformation>asList(information, new KnownDefectInformation())) {
+            try {
+                info.getMethodNames().add("added");
+                fail("Method names should be read-only");
+            } catch (UnsupportedOperationException e) {
+                // Expected
+            }
+        }
+        assertEquals(Arrays.asList("value", "extra"), information.getMethodNames());
+    }
 }
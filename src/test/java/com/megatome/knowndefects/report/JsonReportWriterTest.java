@@ -0,0 +1,49 @@
+package com.megatome.knowndefects.report;
+
+import com.megatome.knowndefects.info.AnnotationInformation;
+import com.megatome.knowndefects.info.KnownAcceptedDefectInformation;
+import com.megatome.knowndefects.info.KnownDefectInformation;
+import com.megatome.knowndefects.scan.AnnotationScanResults;
+import com.megatome.knowndefects.scan.ScanMetrics;
+import org.junit.Test;
+
+import java.io.StringWriter;
+
+import static junit.framework.Assert.assertEquals;
+
+public class JsonReportWriterTest {
+    @Test
+    public void testWrite() throws Exception {
+        final AnnotationScanResults results = new AnnotationScanResults();
+        final AnnotationInformation kdInfo = new KnownDefectInformation();
+        kdInfo.setClassName("com.example.BTest");
+        kdInfo.setMethodName("testBroken");
+        kdInfo.setLineNumber(12);
+        kdInfo.setMethodValue("value", "Says \"no\"\n");
+        results.addResult(kdInfo.getClassName(), kdInfo);
+        final AnnotationInformation kadInfo = new KnownAcceptedDefectInformation();
+        kadInfo.setClassName("com.example.ATest");
+        kadInfo.setMethodName("testAccepted");
+        kadInfo.setLineNumber(3);
+        results.addResult(kadInfo.getClassName(), kadInfo);
+
+        final StringWriter out = new StringWriter();
+        new JsonReportWriter().write(out, results);
+        assertEquals("{\"packages\":[{\"name\":\"com.example\",\"classes\":["
+                + "{\"name\":\"ATest\",\"annotations\":[{\"type\":\"com.megatome.knowndefects.annotations.KnownAndAcceptedDefect\",\"method\":\"testAccepted\",\"line\":3,\"properties\":{}}]},"
+                + "{\"name\":\"BTest\",\"annotations\":[{\"type\":\"com.megatome.knowndefects.annotations.KnownDefect\",\"method\":\"testBroken\",\"line\":12,\"properties\":{\"value\":\"Says \\\"no\\\"\\n\"}}]}]}]}",
+                out.toString());
+    }
+
+    @Test
+    public void testWriteMetrics() throws Exception {
+        final ScanMetrics metrics = new ScanMetrics();
+        metrics.addRender(5000000L);
+
+        final StringWriter out = new StringWriter();
+        new JsonReportWriter().writeMetrics(out, metrics);
+        assertEquals("{\"filesVisited\":0,\"filesFiltered\":0,\"directoriesPruned\":0,\"classesRead\":0,\"classesPrefiltered\":0,\"classesParsed\":0,\"annotatedMethods\":0,\"lineNumbersResolved\":0,\"bytesRead\":0,"
+                + "\"annotationsFound\":0,\"walkMillis\":0,\"parseMillis\":0,\"aggregateMillis\":0,\"renderMillis\":5}",
+                out.toString());
+    }
+}
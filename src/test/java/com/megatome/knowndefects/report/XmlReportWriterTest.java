@@ -0,0 +1,75 @@
+package com.megatome.knowndefects.report;
+
+import com.megatome.knowndefects.info.AnnotationInformation;
+import com.megatome.knowndefects.info.KnownAcceptedDefectInformation;
+import com.megatome.knowndefects.info.KnownDefectInformation;
+import com.megatome.knowndefects.scan.AnnotationScanResults;
+import com.megatome.knowndefects.scan.ClassAnnotation;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.File;
+
+import static junit.framework.Assert.assertEquals;
+
+public class XmlReportWriterTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testWriteClassReport() throws Exception {
+        final ClassAnnotation classAnnotation = new ClassAnnotation("com.example", "ExampleTest");
+        final AnnotationInformation kdInfo = new KnownDefectInformation();
+        kdInfo.setClassName("com.example.ExampleTest");
+        kdInfo.setMethodName("testBroken");
+        kdInfo.setMethodValue("value", "Fails <sometimes> & \"always\"");
+        classAnnotation.addAnnotation(kdInfo);
+        final AnnotationInformation kadInfo = new KnownAcceptedDefectInformation();
+        kadInfo.setClassName("com.example.ExampleTest");
+        kadInfo.setMethodName("testAccepted");
+        kadInfo.setMethodValue("author", "cjohnston");
+        classAnnotation.addAnnotation(kadInfo);
+
+        final File file = new File(folder.getRoot(), "com.example.ExampleTest.xml");
+        new XmlReportWriter().writeClassReport(file, classAnnotation);
+
+        final Document doc = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(file);
+        final Element root = doc.getDocumentElement();
+        assertEquals("annotationResults", root.getTagName());
+        assertEquals("com.example", root.getElementsByTagName("package").item(0).getTextContent());
+        assertEquals("ExampleTest", root.getElementsByTagName("className").item(0).getTextContent());
+
+        final NodeList annotations = root.getElementsByTagName("annotation");
+        assertEquals(2, annotations.getLength());
+        final Element accepted = (Element) annotations.item(0);
+        assertEquals(kadInfo.getAnnotationName(), accepted.getAttribute("type"));
+        assertEquals("testAccepted", accepted.getAttribute("method"));
+        final Element defect = (Element) annotations.item(1);
+        final Element property = (Element) defect.getElementsByTagName("property").item(0);
+        assertEquals("value", property.getAttribute("name"));
+        assertEquals("Fails <sometimes> & \"always\"", property.getAttribute("value"));
+    }
+
+    @Test
+    public void testWriteClassReportsInParallel() throws Exception {
+        final AnnotationScanResults results = new AnnotationScanResults();
+        for (int i = 0; i < 50; i++) {
+            final AnnotationInformation info = new KnownDefectInformation();
+            info.setClassName("pkg" + (i % 5) + ".Class" + i);
+            info.setMethodName("method");
+            info.setMethodValue("value", "note" + i);
+            results.addResult(info.getClassName(), info);
+        }
+
+        XmlReportWriter.writeClassReports(folder.getRoot(), results, 4);
+
+        assertEquals(50, folder.getRoot().list().length);
+        final Document doc = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(new File(folder.getRoot(), "pkg3.Class13.xml"));
+        assertEquals("Class13", doc.getDocumentElement().getElementsByTagName("className").item(0).getTextContent());
+    }
+}
@@ -0,0 +1,82 @@
+package com.megatome.knowndefects.scan;
+
+import com.megatome.knowndefects.info.AnnotationInformation;
+import com.megatome.knowndefects.info.KnownAcceptedDefectInformation;
+import com.megatome.knowndefects.info.KnownDefectInformation;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertSame;
+import static junit.framework.Assert.assertTrue;
+import static junit.framework.Assert.fail;
+
+public class AnnotationScanResultsTest {
+    @Test
+    public void testRunningCounts() {
+        final AnnotationScanResults results = new AnnotationScanResults();
+        results.addResult("pkg.A", create(new KnownDefectInformation(), "pkg.A", "one"));
+        results.addResult("pkg.A", create(new KnownDefectInformation(), "pkg.A", "two"));
+        results.addResult("pkg.B", create(new KnownAcceptedDefectInformation(), "pkg.B", "one"));
+
+        final AnnotationScanResults other = new AnnotationScanResults();
+        other.addResult("pkg.A", create(new KnownDefectInformation(), "pkg.A", "three"));
+        other.addResult("pkg.C", create(new KnownDefectInformation(), "pkg.C", "one"));
+        other.addResult("other.D", create(new KnownAcceptedDefectInformation(), "other.D", "one"));
+        results.merge(other);
+
+        assertEquals(2, results.getKnownDefectResultsCount());
+        assertEquals(2, results.getKnownAcceptedDefectResultsCount());
+        assertTrue(results.hasKnownDefectResults());
+        assertEquals(Arrays.asList("A", "B", "C"), results.getAllResults().get(1).getClassNames());
+        assertEquals(3, results.getAllResults().get(1).getKnownDefectResults("A").getAnnotations().size());
+    }
+
+    @Test
+    public void testFreeze() {
+        final AnnotationScanResults results = new AnnotationScanResults();
+        results.addResult("pkg.B", create(new KnownDefectInformation(), "pkg.B", "one"));
+        results.addResult("other.A", create(new KnownAcceptedDefectInformation(), "other.A", "one"));
+        results.freeze();
+
+        assertSame(results.getAllResults(), results.getAllResults());
+        assertEquals("other", results.getAllResults().get(0).getPackageName());
+        assertEquals("pkg", results.getKnownDefectResults().keySet().iterator().next());
+        try {
+            results.addResult("pkg.C", create(new KnownDefectInformation(), "pkg.C", "one"));
+            fail("Frozen results should not accept new results");
+        } catch (IllegalStateException e) {
+            // Expected
+        }
+
+        final AnnotationScanResults merged = new AnnotationScanResults();
+        merged.merge(results);
+        merged.addResult("pkg.B", create(new KnownDefectInformation(), "pkg.B", "two"));
+        assertEquals(2, merged.getAllResults().get(1).getKnownDefectResults("B").getAnnotations().size());
+        assertEquals(1, results.getAllResults().get(1).getKnownDefectResults("B").getAnnotations().size());
+    }
+
+    @Test
+    public void testMergeCopiesUnfrozenSource() {
+        final AnnotationScanResults source = new AnnotationScanResults();
+        source.addResult("pkg.A", create(new KnownDefectInformation(), "pkg.A", "one"));
+        final AnnotationScanResults merged = new AnnotationScanResults();
+        merged.merge(source);
+
+        source.addResult("pkg.A", create(new KnownDefectInformation(), "pkg.A", "two"));
+        source.addResult("pkg.B", create(new KnownDefectInformation(), "pkg.B", "one"));
+        assertEquals(1, merged.getKnownDefectResultsCount());
+        assertEquals(Arrays.asList("A"), merged.getAllResults().get(0).getClassNames());
+        assertEquals(1, merged.getAllResults().get(0).getKnownDefectResults("A").getAnnotations().size());
+
+        merged.addResult("pkg.A", create(new KnownDefectInformation(), "pkg.A", "three"));
+        assertEquals(2, source.getAllResults().get(0).getKnownDefectResults("A").getAnnotations().size());
+    }
+
+    private static AnnotationInformation create(final AnnotationInformation info, final String className, final String methodName) {
+        info.setClassName(className);
+        info.setMethodName(methodName);
+        return info;
+    }
+}
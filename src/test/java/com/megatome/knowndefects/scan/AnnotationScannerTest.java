@@ -0,0 +1,116 @@
+package com.megatome.knowndefects.scan;
+
+import com.megatome.knowndefects.Constants;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static junit.framework.Assert.assertEquals;
+
+public class AnnotationScannerTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Before
+    public void createClasses() throws Exception {
+        final TestClassWriter writer = new TestClassWriter(folder.getRoot());
+        writer.writeClass("pkg.First", "method", Constants.KNOWN_DEFECT_ANNOTATION_CLASS, null);
+        writer.writeClass("pkg.Second", "method", Constants.KNOWN_ACCEPTED_DEFECT_ANNOTATION_CLASS, null);
+        writer.writeClass("other.Third", "method", Constants.KNOWN_DEFECT_ANNOTATION_CLASS, null);
+    }
+
+    @Test
+    public void testFreshResultsPerScan() throws Exception {
+        final AnnotationScanner scanner = AnnotationScanner.builder().build();
+        assertEquals(2, scanner.scan(folder.getRoot().getPath()).getKnownDefectResultsCount());
+        assertEquals(2, scanner.scan(folder.getRoot().getPath()).getKnownDefectResultsCount());
+        assertEquals(2, AnnotationScanner.findAnnotationsInPath(folder.getRoot().getPath()).getKnownDefectResultsCount());
+    }
+
+    @Test
+    public void testAnnotationTypes() throws Exception {
+        final AnnotationScanResults results = AnnotationScanner.builder()
+                .annotationTypes(Collections.singleton(Constants.KNOWN_ACCEPTED_DEFECT_ANNOTATION_CLASS))
+                .build().scan(folder.getRoot().getPath());
+        assertEquals(0, results.getKnownDefectResultsCount());
+        assertEquals(1, results.getKnownAcceptedDefectResultsCount());
+    }
+
+    @Test
+    public void testSkipCodeParser() throws Exception {
+        final AnnotationScanResults results = AnnotationScanner.builder().parser(ClassParserType.SKIP_CODE).threads(2)
+                .build().scan(folder.getRoot().getPath());
+        assertEquals(2, results.getKnownDefectResultsCount());
+        assertEquals(1, results.getKnownAcceptedDefectResultsCount());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnsupportedAnnotationType() {
+        AnnotationScanner.builder().annotationTypes(Collections.singleton("org.junit.Test"));
+    }
+
+    @Test
+    public void testFilter() throws Exception {
+        final AnnotationScanResults results = AnnotationScanner.builder().filter(new Filter() {
+            public boolean accepts(String paramString) {
+                return !paramString.contains("other");
+            }
+        }).build().scan(folder.getRoot().getPath());
+        assertEquals(1, results.getAllResults().size());
+        assertEquals("pkg", results.getAllResults().get(0).getPackageName());
+    }
+
+    @Test
+    public void testPackagePatterns() throws Exception {
+        final ScanMetrics metrics = new ScanMetrics();
+        AnnotationScanResults results = AnnotationScanner.builder().includePackage("pkg").build()
+                .scan(folder.getRoot().getPath(), metrics);
+        assertEquals(1, results.getAllResults().size());
+        assertEquals(1, results.getKnownDefectResultsCount());
+        assertEquals(1, results.getKnownAcceptedDefectResultsCount());
+        assertEquals(1, metrics.getDirectoriesPruned());
+
+        results = AnnotationScanner.builder().ignorePackage("pkg").build().scan(folder.getRoot().getPath());
+        assertEquals(1, results.getAllResults().size());
+        assertEquals("other", results.getAllResults().get(0).getPackageName());
+
+        results = AnnotationScanner.builder().includePackage("*").ignorePackage("pkg").build().scan(folder.getRoot().getPath());
+        assertEquals(1, results.getAllResults().size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidPackagePattern() {
+        AnnotationScanner.builder().includePackage("com..example").build();
+    }
+
+    @Test
+    public void testConcurrentScans() throws Exception {
+        final AnnotationScanner scanner = AnnotationScanner.builder().threads(2).build();
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            final List<Future<AnnotationScanResults>> futures = new ArrayList<Future<AnnotationScanResults>>();
+            for (int i = 0; i < 8; i++) {
+                futures.add(executor.submit(new Callable<AnnotationScanResults>() {
+                    public AnnotationScanResults call() throws Exception {
+                        return scanner.scan(folder.getRoot().getPath());
+                    }
+                }));
+            }
+            for (final Future<AnnotationScanResults> future : futures) {
+                assertEquals(2, future.get().getKnownDefectResultsCount());
+                assertEquals(1, future.get().getKnownAcceptedDefectResultsCount());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.megatome.knowndefects.scan;
+
+import com.megatome.knowndefects.info.AnnotationInformation;
+import com.megatome.knowndefects.info.KnownAcceptedDefectInformation;
+import com.megatome.knowndefects.info.KnownDefectInformation;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNotNull;
+import static junit.framework.Assert.assertNull;
+
+public class ArtifactCacheTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        final AnnotationScanResults results = new AnnotationScanResults();
+        final AnnotationInformation kdInfo = new KnownDefectInformation();
+        kdInfo.setClassName("com.example.FixtureTest");
+        kdInfo.setMethodName("testBroken");
+        kdInfo.setLineNumber(7);
+        kdInfo.setMethodValue("value", "Broken fixture");
+        results.addResult(kdInfo.getClassName(), kdInfo);
+        final AnnotationInformation kadInfo = new KnownAcceptedDefectInformation();
+        kadInfo.setClassName("com.example.other.SharedTest");
+        kadInfo.setMethodName("testAccepted");
+        kadInfo.setMethodValue("author", "cjohnston");
+        results.addResult(kadInfo.getClassName(), kadInfo);
+
+        final ArtifactCache cache = new ArtifactCache(folder.getRoot());
+        assertNull(cache.get("com.example", "fixtures", "1.0", "tests"));
+        cache.put("com.example", "fixtures", "1.0", "tests", results);
+        assertEquals(new File(folder.getRoot(), "com/example/fixtures/1.0/fixtures-1.0-tests.kdcache"),
+                cache.getEntryFile("com.example", "fixtures", "1.0", "tests"));
+
+        final AnnotationScanResults cached = cache.get("com.example", "fixtures", "1.0", "tests");
+        assertNotNull(cached);
+        assertEquals(1, cached.getKnownDefectResultsCount());
+        assertEquals(1, cached.getKnownAcceptedDefectResultsCount());
+        final AnnotationInformation info = cached.getAllResults().get(0).getKnownDefectResults("FixtureTest").getAnnotations().get(0);
+        assertEquals("testBroken", info.getMethodName());
+        assertEquals(7, info.getLineNumber());
+        assertEquals("Broken fixture", info.getMethodValue("value"));
+        assertNull(cache.get("com.example", "fixtures", "1.0", null));
+    }
+}
@@ -71,5 +71,25 @@ public class ClassAnnotationTest {
         assertTrue(merged.contains(kdInfo1));
         assertEquals(3, merged.indexOf(kdInfo1));
     }
-}
 
+    @Test
+    public void testSortedWhenRead() {
+        final ClassAnnotation annotation = new ClassAnnotation("package", "Class");
+        for (int i = 9; i >= 0; i--) {
+            final AnnotationInformation info = new KnownDefectInformation();
+            info.setMethodName("method" + i);
+            annotation.addAnnotation(info);
+        }
+
+        final List<AnnotationInformation> annotations = annotation.getAnnotations();
+        assertEquals(10, annotations.size());
+        for (int i = 0; i < 10; i++) {
+            assertEquals("method" + i, annotations.get(i).getMethodName());
+        }
+
+        final AnnotationInformation info = new KnownDefectInformation();
+        info.setMethodName("method05");
+        annotation.addAnnotation(info);
+        assertEquals(1, annotation.getAnnotations().indexOf(info));
+    }
+}
@@ -0,0 +1,168 @@
+package com.megatome.knowndefects.scan;
+
+import com.megatome.knowndefects.Constants;
+import com.megatome.knowndefects.info.AnnotationInformation;
+import com.megatome.knowndefects.info.KnownDefectInformation;
+import javassist.bytecode.AnnotationsAttribute;
+import javassist.bytecode.AttributeInfo;
+import javassist.bytecode.Bytecode;
+import javassist.bytecode.ClassFile;
+import javassist.bytecode.CodeAttribute;
+import javassist.bytecode.ConstPool;
+import javassist.bytecode.MethodInfo;
+import javassist.bytecode.Opcode;
+import javassist.bytecode.annotation.Annotation;
+import javassist.bytecode.annotation.AnnotationMemberValue;
+import javassist.bytecode.annotation.ArrayMemberValue;
+import javassist.bytecode.annotation.ClassMemberValue;
+import javassist.bytecode.annotation.EnumMemberValue;
+import javassist.bytecode.annotation.IntegerMemberValue;
+import javassist.bytecode.annotation.LongMemberValue;
+import javassist.bytecode.annotation.MemberValue;
+import javassist.bytecode.annotation.StringMemberValue;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.fail;
+
+public class ClassParserTest {
+    private static final Set<String> TYPES = new HashSet<String>(Arrays.asList(Constants.KNOWN_DEFECT_ANNOTATION_CLASS,
+            Constants.KNOWN_ACCEPTED_DEFECT_ANNOTATION_CLASS));
+
+    @Test
+    public void testParsersAgree() throws Exception {
+        final byte[] bytes = createClass();
+        final ScanMetrics javassistMetrics = new ScanMetrics();
+        final List<String> javassist = describe(ClassParserType.JAVASSIST.createParser(TYPES).parse(bytes, bytes.length, javassistMetrics));
+        final ScanMetrics skipCodeMetrics = new ScanMetrics();
+        final List<String> skipCode = describe(ClassParserType.SKIP_CODE.createParser(TYPES).parse(bytes, bytes.length, skipCodeMetrics));
+        assertEquals(javassist, skipCode);
+        for (final ScanMetrics metrics : Arrays.asList(javassistMetrics, skipCodeMetrics)) {
+            assertEquals(3, metrics.getAnnotatedMethods());
+            assertEquals(2, metrics.getLineNumbersResolved());
+        }
+        assertEquals(3, skipCode.size());
+        assertEquals(Constants.KNOWN_DEFECT_ANNOTATION_CLASS + " pkg.Parsed#annotated:42 {value=Has \"quotes\"}", skipCode.get(0));
+        assertEquals(Constants.KNOWN_DEFECT_ANNOTATION_CLASS + " pkg.Parsed#noCode:-1 {}", skipCode.get(2));
+    }
+
+    @Test
+    public void testMemberValues() throws Exception {
+        final byte[] bytes = createClass();
+        for (final ClassParserType type : ClassParserType.values()) {
+            final List<AnnotationInformation> found = type.createParser(TYPES).parse(bytes, bytes.length, new ScanMetrics());
+            assertEquals("Has \"quotes\"", found.get(0).getMethodValue("value"));
+            final AnnotationInformation accepted = found.get(1);
+            assertEquals("é中", accepted.getMethodValue("author"));
+            assertEquals("a, 7", accepted.getMethodValue("reason"));
+            assertEquals("RED", accepted.getMethodValue("date"));
+        }
+    }
+
+    @Test
+    public void testTruncatedClassRejected() throws Exception {
+        final byte[] bytes = createClass();
+        for (final ClassParserType type : ClassParserType.values()) {
+            try {
+                type.createParser(TYPES).parse(bytes, bytes.length - 20, new ScanMetrics());
+                fail("Truncated class accepted by " + type);
+            } catch (IOException e) {
+                // Expected
+            }
+        }
+    }
+
+    private static List<String> describe(final List<AnnotationInformation> found) {
+        final List<String> result = new ArrayList<String>();
+        for (final AnnotationInformation info : found) {
+            final StringBuilder builder = new StringBuilder();
+            builder.append(info instanceof KnownDefectInformation
+                    ? Constants.KNOWN_DEFECT_ANNOTATION_CLASS : Constants.KNOWN_ACCEPTED_DEFECT_ANNOTATION_CLASS);
+            builder.append(' ').append(info.getClassName()).append('#').append(info.getMethodName()).append(':').append(info.getLineNumber());
+            builder.append(" {");
+            for (final String name : info.getMethodNames()) {
+                if (builder.charAt(builder.length() - 1) != '{') {
+                    builder.append(", ");
+                }
+                builder.append(name).append('=').append(info.getMethodValue(name));
+            }
+            result.add(builder.append('}').toString());
+        }
+        return result;
+    }
+
+    private static byte[] createClass() throws Exception {
+        final ClassFile cf = new ClassFile(false, "pkg.Parsed", null);
+        final ConstPool cp = cf.getConstPool();
+
+        final MethodInfo annotated = new MethodInfo(cp, "annotated", "()V");
+        annotated.setCodeAttribute(createCode(cp, 42));
+        final AnnotationsAttribute visible = new AnnotationsAttribute(cp, AnnotationsAttribute.visibleTag);
+        final Annotation test = new Annotation("org.junit.Test", cp);
+        test.addMemberValue("expected", new ClassMemberValue("java.lang.IllegalStateException", cp));
+        test.addMemberValue("timeout", new LongMemberValue(1000L, cp));
+        final Annotation nested = new Annotation("pkg.Nested", cp);
+        nested.addMemberValue("size", new IntegerMemberValue(cp, 3));
+        test.addMemberValue("nested", new AnnotationMemberValue(nested, cp));
+        visible.addAnnotation(test);
+        final Annotation defect = new Annotation(Constants.KNOWN_DEFECT_ANNOTATION_CLASS, cp);
+        defect.addMemberValue("value", new StringMemberValue("Has \"quotes\"", cp));
+        visible.addAnnotation(defect);
+        annotated.addAttribute(visible);
+
+        final AnnotationsAttribute invisible = new AnnotationsAttribute(cp, AnnotationsAttribute.invisibleTag);
+        final Annotation accepted = new Annotation(Constants.KNOWN_ACCEPTED_DEFECT_ANNOTATION_CLASS, cp);
+        accepted.addMemberValue("author", new StringMemberValue("é中", cp));
+        final ArrayMemberValue array = new ArrayMemberValue(cp);
+        array.setValue(new MemberValue[]{new StringMemberValue("a", cp), new IntegerMemberValue(cp, 7)});
+        accepted.addMemberValue("reason", array);
+        final EnumMemberValue color = new EnumMemberValue(cp);
+        color.setType("pkg.Color");
+        color.setValue("RED");
+        accepted.addMemberValue("date", color);
+        invisible.addAnnotation(accepted);
+        annotated.addAttribute(invisible);
+        cf.addMethod(annotated);
+
+        final MethodInfo plain = new MethodInfo(cp, "plain", "()V");
+        plain.setCodeAttribute(createCode(cp, 50));
+        final AnnotationsAttribute plainVisible = new AnnotationsAttribute(cp, AnnotationsAttribute.visibleTag);
+        plainVisible.addAnnotation(new Annotation("org.junit.Test", cp));
+        plain.addAttribute(plainVisible);
+        cf.addMethod(plain);
+
+        final MethodInfo noCode = new MethodInfo(cp, "noCode", "()V");
+        final AnnotationsAttribute noCodeVisible = new AnnotationsAttribute(cp, AnnotationsAttribute.visibleTag);
+        noCodeVisible.addAnnotation(new Annotation(Constants.KNOWN_DEFECT_ANNOTATION_CLASS, cp));
+        noCode.addAttribute(noCodeVisible);
+        cf.addMethod(noCode);
+
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final DataOutputStream out = new DataOutputStream(bytes);
+        cf.write(out);
+        out.close();
+        return bytes.toByteArray();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static CodeAttribute createCode(final ConstPool cp, final int firstLine) {
+        final Bytecode code = new Bytecode(cp, 0, 1);
+        code.add(Opcode.NOP);
+        code.add(Opcode.NOP);
+        code.add(Opcode.RETURN);
+        final CodeAttribute attribute = code.toCodeAttribute();
+        // Two entries starting at pc 0 and 2, as javac writes for a method spanning lines
+        final byte[] table = {0, 2, 0, 0, (byte) (firstLine >> 8), (byte) firstLine, 0, 2, 0, (byte) (firstLine + 1)};
+        attribute.getAttributes().add(new AttributeInfo(cp, "LineNumberTable", table));
+        return attribute;
+    }
+}
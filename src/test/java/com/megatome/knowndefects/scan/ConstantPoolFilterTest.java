@@ -0,0 +1,66 @@
+package com.megatome.knowndefects.scan;
+
+import com.megatome.knowndefects.Constants;
+import javassist.bytecode.ClassFile;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertTrue;
+
+public class ConstantPoolFilterTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final ConstantPoolFilter filter = new ConstantPoolFilter(Arrays.asList(Constants.KNOWN_DEFECT_ANNOTATION_CLASS, Constants.KNOWN_ACCEPTED_DEFECT_ANNOTATION_CLASS));
+
+    @Test
+    public void testAnnotatedClassAccepted() throws Exception {
+        final TestClassWriter writer = new TestClassWriter(folder.getRoot());
+        assertTrue(accepts(writer.writeClass("pkg.KD", "method", Constants.KNOWN_DEFECT_ANNOTATION_CLASS, null)));
+        assertTrue(accepts(writer.writeClass("pkg.KAD", "method", Constants.KNOWN_ACCEPTED_DEFECT_ANNOTATION_CLASS, null)));
+    }
+
+    @Test
+    public void testUnannotatedClassRejected() throws Exception {
+        final TestClassWriter writer = new TestClassWriter(folder.getRoot());
+        assertFalse(accepts(writer.writeClass("pkg.Plain", "method", null, null)));
+        assertFalse(accepts(writer.writeClass("pkg.Other", "method", "org.junit.Test", null)));
+    }
+
+    @Test
+    public void testWideConstantsSkipped() throws Exception {
+        final TestClassWriter writer = new TestClassWriter(folder.getRoot());
+        final ClassFile cf = new ClassFile(false, "pkg.Wide", null);
+        cf.getConstPool().addLongInfo(42L);
+        cf.getConstPool().addDoubleInfo(4.2);
+        writer.addMethod(cf, "method", Constants.KNOWN_DEFECT_ANNOTATION_CLASS, null);
+        assertTrue(accepts(writer.write(cf)));
+    }
+
+    @Test
+    public void testUnreadableClassAccepted() {
+        assertTrue(filter.accepts(new byte[] {1, 2, 3}, 3));
+        assertTrue(filter.accepts(new byte[] {(byte) 0xCA, (byte) 0xFE, (byte) 0xBA, (byte) 0xBE, 0, 0, 0, 50, 0, 5, 1, 0, 20}, 13));
+    }
+
+    private boolean accepts(final File classFile) throws IOException {
+        final byte[] bytes = new byte[(int) classFile.length()];
+        final FileInputStream in = new FileInputStream(classFile);
+        try {
+            int offset = 0;
+            while (offset < bytes.length) {
+                offset += in.read(bytes, offset, bytes.length - offset);
+            }
+        } finally {
+            in.close();
+        }
+        return filter.accepts(bytes, bytes.length);
+    }
+}
@@ -0,0 +1,87 @@
+package com.megatome.knowndefects.scan;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNotNull;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertTrue;
+import static junit.framework.Assert.fail;
+
+public class FileIteratorTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testFilteredWalk() throws Exception {
+        final File root = folder.getRoot();
+        assertTrue(new File(root, "a/b").mkdirs());
+        assertTrue(new File(root, "c").mkdirs());
+        assertTrue(new File(root, "a/One.class").createNewFile());
+        assertTrue(new File(root, "a/b/Two.class").createNewFile());
+        assertTrue(new File(root, "c/Three.class").createNewFile());
+        assertTrue(new File(root, "c/readme.txt").createNewFile());
+
+        final FileIterator it = new FileIterator(root, new Filter() {
+            public boolean accepts(String paramString) {
+                return paramString.endsWith(".class");
+            }
+        });
+        final Set<String> names = new HashSet<String>();
+        File file;
+        while ((file = it.nextFile()) != null) {
+            assertTrue(file.isAbsolute());
+            names.add(file.getName());
+        }
+        assertEquals(3, names.size());
+        assertTrue(names.contains("Two.class"));
+        assertNull(it.next());
+    }
+
+    @Test
+    public void testDeepTree() throws Exception {
+        File dir = folder.getRoot();
+        for (int i = 0; i < 100; i++) {
+            dir = new File(dir, "d");
+        }
+        assertTrue(dir.mkdirs());
+        assertTrue(new File(dir, "Deep.class").createNewFile());
+
+        final FileIterator it = new FileIterator(folder.getRoot(), null);
+        assertEquals("Deep.class", it.nextFile().getName());
+        assertNull(it.nextFile());
+    }
+
+    @Test
+    public void testCloseAbandonsWalk() throws Exception {
+        final File root = folder.getRoot();
+        assertTrue(new File(root, "a/b").mkdirs());
+        assertTrue(new File(root, "a/b/One.class").createNewFile());
+        assertTrue(new File(root, "a/b/Two.class").createNewFile());
+
+        final FileIterator it = new FileIterator(root, null);
+        assertNotNull(it.nextFile());
+        it.close();
+        assertNull(it.nextFile());
+        it.close();
+    }
+
+    @Test
+    public void testMissingRootFails() throws Exception {
+        final FileIterator it = new FileIterator(new File(folder.getRoot(), "missing"), null);
+        try {
+            it.nextFile();
+            fail("Missing root accepted");
+        } catch (IOException e) {
+            // Expected
+        }
+        assertNull(it.nextFile());
+    }
+}
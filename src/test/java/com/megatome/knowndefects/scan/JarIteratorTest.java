@@ -0,0 +1,154 @@
+package com.megatome.knowndefects.scan;
+
+import com.megatome.knowndefects.Constants;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNotNull;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertTrue;
+import static junit.framework.Assert.fail;
+
+public class JarIteratorTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testIterateEntries() throws Exception {
+        final File jar = createJar("tests.jar", "pkg.First", "pkg.Second");
+        final JarIterator it = new JarIterator(jar, null);
+        int count = 0;
+        InputStream stream;
+        while ((stream = it.next()) != null) {
+            assertTrue(stream.read() != -1);
+            stream.close();
+            count++;
+        }
+        assertEquals(2, count);
+        assertNull(it.next());
+    }
+
+    @Test
+    public void testFilterAppliedToEntryNames() throws Exception {
+        final File jar = createJar("tests.jar", "pkg.First", "skip.Second");
+        final JarIterator it = new JarIterator(jar, new Filter() {
+            public boolean accepts(String paramString) {
+                return paramString.startsWith("pkg/");
+            }
+        });
+        assertNotNull(it.next());
+        assertNull(it.next());
+    }
+
+    @Test
+    public void testCompositeIterator() throws Exception {
+        final File jar = createJar("first.jar", "pkg.First");
+        final File jar1 = createJar("second.jar", "pkg.Second", "pkg.Third");
+        final StreamIterator it = new CompositeIterator(Arrays.<StreamIterator>asList(new JarIterator(jar, null), new JarIterator(jar1, null)));
+        int count = 0;
+        InputStream stream;
+        while ((stream = it.next()) != null) {
+            stream.close();
+            count++;
+        }
+        assertEquals(3, count);
+    }
+
+    @Test
+    public void testCompositeClosesPendingIterators() throws Exception {
+        final ClosingStream first = new ClosingStream(createJar("first.jar", "pkg.First", "pkg.Second"));
+        final ClosingStream second = new ClosingStream(createJar("second.jar", "pkg.Third"));
+        final StreamIterator it = new CompositeIterator(Arrays.<StreamIterator>asList(new JarIterator(first, null), new JarIterator(second, null)));
+        it.next().close();
+        it.close();
+        assertTrue(first.closed);
+        assertTrue(second.closed);
+        assertNull(it.next());
+    }
+
+    @Test
+    public void testFailedReadClosesArchive() throws Exception {
+        final ClosingStream in = new ClosingStream(createJar("tests.jar", "pkg.First")) {
+            @Override
+            public int read(final byte[] b, final int off, final int len) throws IOException {
+                throw new IOException("Unreadable");
+            }
+        };
+        final JarIterator it = new JarIterator(in, null);
+        try {
+            it.next();
+            fail("Read failure ignored");
+        } catch (AnnotationScanException e) {
+            // Expected
+        }
+        assertTrue(in.closed);
+        assertNull(it.next());
+    }
+
+    @Test
+    public void testScanArchives() throws Exception {
+        final File jar = createJar("tests.jar", "pkg.First", "java.lang.Ignored");
+        final File jar1 = createJar("tests1.jar", "pkg.Second");
+
+        final AnnotationScanResults results = AnnotationScanner.findAnnotationsInArchives(Arrays.asList(jar.getPath(), jar1.getPath()));
+        assertEquals(2, results.getKnownDefectResultsCount());
+        assertEquals(Arrays.asList("First", "Second"), results.getAllResults().get(0).getClassNames());
+
+        assertEquals(1, AnnotationScanner.findAnnotationsInPath(jar.getPath()).getKnownDefectResultsCount());
+    }
+
+    private static class ClosingStream extends FileInputStream {
+        boolean closed = false;
+
+        ClosingStream(final File file) throws IOException {
+            super(file);
+        }
+
+        @Override
+        public void close() throws IOException {
+            closed = true;
+            super.close();
+        }
+    }
+
+    private File createJar(final String name, final String... classNames) throws Exception {
+        final TestClassWriter writer = new TestClassWriter(folder.newFolder(name + ".classes"));
+        final File jar = new File(folder.getRoot(), name);
+        final ZipOutputStream out = new ZipOutputStream(new FileOutputStream(jar));
+        try {
+            out.putNextEntry(new ZipEntry("META-INF/"));
+            out.closeEntry();
+            for (final String className : classNames) {
+                final File classFile = writer.writeClass(className, "method", Constants.KNOWN_DEFECT_ANNOTATION_CLASS,
+                        Collections.singletonMap("value", "note"));
+                out.putNextEntry(new ZipEntry(className.replace('.', '/') + ".class"));
+                final FileInputStream in = new FileInputStream(classFile);
+                try {
+                    final byte[] buffer = new byte[1024];
+                    int read;
+                    while ((read = in.read(buffer)) != -1) {
+                        out.write(buffer, 0, read);
+                    }
+                } finally {
+                    in.close();
+                }
+                out.closeEntry();
+            }
+        } finally {
+            out.close();
+        }
+        return jar;
+    }
+}
@@ -0,0 +1,48 @@
+package com.megatome.knowndefects.scan;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertNotNull;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertTrue;
+
+public class PackageMatcherTest {
+    @Test
+    public void testExcludes() {
+        final PackageMatcher matcher = PackageMatcher.compile(Collections.<String>emptyList(), Arrays.asList("java", "com.sun"));
+        assertTrue(matcher.acceptsPath("Default.class"));
+        assertTrue(matcher.acceptsPath("com/example/Foo.class"));
+        assertTrue(matcher.acceptsPath("/javax/Foo.class"));
+        assertFalse(matcher.acceptsPath("java/lang/String.class"));
+        assertFalse(matcher.acceptsPath("com/sun/Foo.class"));
+        assertNull(matcher.enter(matcher.start(), "java"));
+    }
+
+    @Test
+    public void testIncludesPruneDirectories() {
+        final PackageMatcher matcher = PackageMatcher.compile(Arrays.asList("com.example", "org.*.tests"),
+                Collections.singletonList("com.example.generated"));
+        assertFalse(matcher.acceptsPath("Default.class"));
+        assertFalse(matcher.acceptsPath("com/Foo.class"));
+        assertTrue(matcher.acceptsPath("com/example/Foo.class"));
+        assertTrue(matcher.acceptsPath("com/example/sub/Foo.class"));
+        assertFalse(matcher.acceptsPath("com/example/generated/Foo.class"));
+        assertTrue(matcher.acceptsPath("org/acme/tests/Foo.class"));
+        assertFalse(matcher.acceptsPath("org/acme/Foo.class"));
+
+        final PackageMatcher.State com = matcher.enter(matcher.start(), "com");
+        assertNotNull(com);
+        assertFalse(com.included);
+        assertNull(matcher.enter(com, "other"));
+        assertNull(matcher.enter(matcher.start(), "net"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testEmptyPattern() {
+        PackageMatcher.compile(Collections.singletonList(""), Collections.<String>emptyList());
+    }
+}
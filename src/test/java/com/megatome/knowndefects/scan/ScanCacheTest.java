@@ -0,0 +1,98 @@
+package com.megatome.knowndefects.scan;
+
+import com.megatome.knowndefects.Constants;
+import com.megatome.knowndefects.info.AnnotationInformation;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.List;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNotNull;
+import static junit.framework.Assert.assertNull;
+
+public class ScanCacheTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        final File classes = folder.newFolder("classes");
+        final File classFile = new TestClassWriter(classes).writeClass("pkg.Cached", "method", Constants.KNOWN_DEFECT_ANNOTATION_CLASS,
+                Collections.singletonMap("value", "cached note"));
+        final File cacheFile = new File(folder.getRoot(), "cache/scan.cache");
+
+        final ScanCache cache = ScanCache.create(cacheFile);
+        final AnnotationScanResults results = AnnotationScanner.builder().cache(cache).build().scan(classes.getPath());
+        assertEquals(1, results.getKnownDefectResultsCount());
+        cache.save();
+
+        final ScanCache loaded = ScanCache.load(cacheFile);
+        final List<AnnotationInformation> cached = loaded.get(classFile);
+        assertNotNull(cached);
+        assertEquals(1, cached.size());
+        assertEquals("pkg.Cached", cached.get(0).getClassName());
+        assertEquals("method", cached.get(0).getMethodName());
+        assertEquals("cached note", cached.get(0).getMethodValue("value"));
+
+        final AnnotationScanResults cachedResults = AnnotationScanner.builder().cache(loaded).build().scan(classes.getPath());
+        assertEquals(1, cachedResults.getKnownDefectResultsCount());
+        assertEquals("cached note", cachedResults.getAllResults().get(0).getKnownDefectResults("Cached").getAnnotations().get(0).getMethodValue("value"));
+    }
+
+    @Test
+    public void testChangedFileRescanned() throws Exception {
+        final File classes = folder.newFolder("classes");
+        final TestClassWriter writer = new TestClassWriter(classes);
+        final File classFile = writer.writeClass("pkg.Changed", "method", Constants.KNOWN_DEFECT_ANNOTATION_CLASS, null);
+        final File cacheFile = new File(folder.getRoot(), "scan.cache");
+
+        final ScanCache cache = ScanCache.create(cacheFile);
+        AnnotationScanner.builder().cache(cache).build().scan(classes.getPath());
+        cache.save();
+
+        writer.writeClass("pkg.Changed", "otherMethod", Constants.KNOWN_ACCEPTED_DEFECT_ANNOTATION_CLASS, null);
+        classFile.setLastModified(classFile.lastModified() + 2000);
+
+        final ScanCache loaded = ScanCache.load(cacheFile);
+        assertNull(loaded.get(classFile));
+        final AnnotationScanResults results = AnnotationScanner.builder().cache(loaded).build().scan(classes.getPath());
+        assertEquals(0, results.getKnownDefectResultsCount());
+        assertEquals(1, results.getKnownAcceptedDefectResultsCount());
+    }
+
+    @Test
+    public void testChangedConfigurationRescanned() throws Exception {
+        final File classes = folder.newFolder("classes");
+        final File classFile = new TestClassWriter(classes).writeClass("pkg.Configured", "method", Constants.KNOWN_DEFECT_ANNOTATION_CLASS, null);
+        final File cacheFile = new File(folder.getRoot(), "scan.cache");
+
+        final ScanCache cache = ScanCache.create(cacheFile);
+        AnnotationScanner.builder().cache(cache).build().scan(classes.getPath());
+        cache.save();
+
+        final ScanCache sameConfiguration = ScanCache.load(cacheFile);
+        AnnotationScanner.builder().cache(sameConfiguration).build();
+        assertNotNull(sameConfiguration.get(classFile));
+
+        final ScanCache otherParser = ScanCache.load(cacheFile);
+        AnnotationScanner.builder().cache(otherParser).parser(ClassParserType.SKIP_CODE).build();
+        assertNull(otherParser.get(classFile));
+
+        final ScanCache otherTypes = ScanCache.load(cacheFile);
+        final AnnotationScanner scanner = AnnotationScanner.builder().cache(otherTypes)
+                .annotationTypes(Collections.singletonList(Constants.KNOWN_ACCEPTED_DEFECT_ANNOTATION_CLASS)).build();
+        assertNull(otherTypes.get(classFile));
+        assertEquals(0, scanner.scan(classes.getPath()).getKnownDefectResultsCount());
+    }
+
+    @Test
+    public void testCorruptCacheIgnored() throws Exception {
+        final File cacheFile = folder.newFile("scan.cache");
+        final ScanCache cache = ScanCache.load(cacheFile);
+        assertNull(cache.get(cacheFile));
+    }
+}
@@ -0,0 +1,74 @@
+package com.megatome.knowndefects.scan;
+
+import com.megatome.knowndefects.info.AnnotationInformation;
+import com.megatome.knowndefects.info.KnownAcceptedDefectInformation;
+import com.megatome.knowndefects.info.KnownDefectInformation;
+import org.junit.Test;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertTrue;
+
+public class ScanDiffTest {
+    @Test
+    public void testCompare() {
+        final AnnotationScanResults baseline = new AnnotationScanResults();
+        add(baseline, new KnownDefectInformation(), "pkg.ATest", "testKept", 10, "same");
+        add(baseline, new KnownDefectInformation(), "pkg.ATest", "testChanged", 20, "before");
+        add(baseline, new KnownDefectInformation(), "pkg.BTest", "testRemoved", 30, "gone");
+        add(baseline, new KnownDefectInformation(), "pkg.CTest", "testRetyped", 40, "typed");
+
+        final AnnotationScanResults current = new AnnotationScanResults();
+        add(current, new KnownDefectInformation(), "pkg.ATest", "testKept", 15, "same");
+        add(current, new KnownDefectInformation(), "pkg.ATest", "testChanged", 20, "after");
+        add(current, new KnownDefectInformation(), "other.DTest", "testAdded", 50, "new");
+        add(current, new KnownAcceptedDefectInformation(), "pkg.CTest", "testRetyped", 40, "typed");
+        current.freeze();
+
+        final ScanDiff diff = ScanDiff.compare(baseline, current);
+        assertFalse(diff.isEmpty());
+        assertEquals(2, diff.getAddedCount());
+        assertEquals(2, diff.getRemovedCount());
+        assertEquals(1, diff.getChangedCount());
+        assertEquals("other", diff.getAdded().getAllResults().get(0).getPackageName());
+        assertEquals(1, diff.getAdded().getKnownAcceptedDefectResultsCount());
+        assertTrue(diff.getRemoved().getAllResults().get(0).hasKnownDefectResults("BTest"));
+        assertEquals("before", diff.getChangedBefore().getAllResults().get(0).getKnownDefectResults("ATest").getAnnotations().get(0).getMethodValue("value"));
+        assertEquals("after", diff.getChangedAfter().getAllResults().get(0).getKnownDefectResults("ATest").getAnnotations().get(0).getMethodValue("value"));
+
+        assertTrue(ScanDiff.compare(current, current).isEmpty());
+    }
+
+    @Test
+    public void testOverloads() {
+        final AnnotationScanResults baseline = new AnnotationScanResults();
+        add(baseline, new KnownDefectInformation(), "pkg.ATest", "testOverloaded", 10, "first");
+        add(baseline, new KnownDefectInformation(), "pkg.ATest", "testOverloaded", 20, "second");
+        add(baseline, new KnownDefectInformation(), "pkg.ATest", "testOverloaded", 30, "third");
+
+        final AnnotationScanResults current = new AnnotationScanResults();
+        add(current, new KnownDefectInformation(), "pkg.ATest", "testOverloaded", 35, "third");
+        add(current, new KnownDefectInformation(), "pkg.ATest", "testOverloaded", 20, "second, edited");
+        add(current, new KnownDefectInformation(), "pkg.ATest", "testOverloaded", 15, "first");
+
+        assertTrue(ScanDiff.compare(baseline, baseline).isEmpty());
+        final ScanDiff diff = ScanDiff.compare(baseline, current);
+        assertEquals(0, diff.getAddedCount());
+        assertEquals(0, diff.getRemovedCount());
+        assertEquals(1, diff.getChangedCount());
+        assertEquals("second", diff.getChangedBefore().getAllResults().get(0).getKnownDefectResults("ATest").getAnnotations().get(0).getMethodValue("value"));
+        assertEquals("second, edited", diff.getChangedAfter().getAllResults().get(0).getKnownDefectResults("ATest").getAnnotations().get(0).getMethodValue("value"));
+
+        add(current, new KnownDefectInformation(), "pkg.ATest", "testOverloaded", 40, "fourth");
+        assertEquals(1, ScanDiff.compare(baseline, current).getAddedCount());
+    }
+
+    private static void add(final AnnotationScanResults results, final AnnotationInformation info, final String className,
+                            final String methodName, final int lineNumber, final String value) {
+        info.setClassName(className);
+        info.setMethodName(methodName);
+        info.setLineNumber(lineNumber);
+        info.setMethodValue("value", value);
+        results.addResult(className, info);
+    }
+}
@@ -0,0 +1,101 @@
+package com.megatome.knowndefects.scan;
+
+import com.megatome.knowndefects.Constants;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.Collections;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
+
+public class ScanPipelineTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testParallelMatchesSequential() throws Exception {
+        final TestClassWriter writer = new TestClassWriter(folder.getRoot());
+        for (int i = 0; i < 1000; i++) {
+            final String annotation;
+            if (i % 3 == 0) {
+                annotation = Constants.KNOWN_DEFECT_ANNOTATION_CLASS;
+            } else if (i % 3 == 1) {
+                annotation = Constants.KNOWN_ACCEPTED_DEFECT_ANNOTATION_CLASS;
+            } else {
+                annotation = null;
+            }
+            writer.writeClass("pkg" + (i % 7) + ".Class" + i, "method" + i, annotation,
+                    Collections.singletonMap("value", "note" + i));
+        }
+
+        final ScanMetrics sequentialMetrics = new ScanMetrics();
+        final AnnotationScanResults sequential = AnnotationScanner.builder().threads(1).build().scan(folder.getRoot().getPath(), sequentialMetrics);
+        final ScanMetrics parallelMetrics = new ScanMetrics();
+        final AnnotationScanResults parallel = AnnotationScanner.builder().threads(4).build().scan(folder.getRoot().getPath(), parallelMetrics);
+
+        assertEquals(334, parallel.getKnownDefectResultsCount());
+        assertEquals(333, parallel.getKnownAcceptedDefectResultsCount());
+        assertEquals(sequential.getKnownDefectResultsCount(), parallel.getKnownDefectResultsCount());
+        assertEquals(sequential.getKnownAcceptedDefectResultsCount(), parallel.getKnownAcceptedDefectResultsCount());
+        assertEquals(sequential.getAllResults().size(), parallel.getAllResults().size());
+        for (int i = 0; i < sequential.getAllResults().size(); i++) {
+            final PackageScanResults expected = sequential.getAllResults().get(i);
+            final PackageScanResults actual = parallel.getAllResults().get(i);
+            assertEquals(expected.getPackageName(), actual.getPackageName());
+            assertEquals(expected.getClassNames(), actual.getClassNames());
+        }
+
+        assertEquals(1000, sequentialMetrics.getClassesRead());
+        assertEquals(1000, parallelMetrics.getClassesRead());
+        assertEquals(333, sequentialMetrics.getClassesPrefiltered());
+        assertEquals(333, parallelMetrics.getClassesPrefiltered());
+        assertEquals(667, sequentialMetrics.getClassesParsed());
+        assertEquals(667, parallelMetrics.getClassesParsed());
+        assertEquals(1000, parallelMetrics.getFilesVisited());
+        assertEquals(0, parallelMetrics.getFilesFiltered());
+        assertEquals(667, sequentialMetrics.getAnnotationsFound());
+        assertEquals(667, parallelMetrics.getAnnotationsFound());
+        assertEquals(sequentialMetrics.getBytesRead(), parallelMetrics.getBytesRead());
+        assertTrue(parallelMetrics.getBytesRead() > 0);
+    }
+
+    @Test
+    public void testPrefilteredClassesCached() throws Exception {
+        final TestClassWriter writer = new TestClassWriter(folder.newFolder("classes"));
+        writer.writeClass("pkg.Annotated", "method", Constants.KNOWN_DEFECT_ANNOTATION_CLASS, null);
+        writer.writeClass("pkg.Plain", "method", null, null);
+        final File root = new File(folder.getRoot(), "classes");
+        final File cacheFile = new File(folder.getRoot(), "scan.cache");
+        final ScanCache cache = ScanCache.create(cacheFile);
+
+        final ScanMetrics first = new ScanMetrics();
+        assertEquals(1, AnnotationScanner.builder().threads(4).cache(cache).build().scan(root.getPath(), first).getKnownDefectResultsCount());
+        cache.save();
+        assertEquals(1, first.getClassesPrefiltered());
+        assertEquals(1, first.getClassesParsed());
+
+        final ScanMetrics second = new ScanMetrics();
+        final AnnotationScanner scanner = AnnotationScanner.builder().threads(4).cache(ScanCache.load(cacheFile)).build();
+        assertEquals(1, scanner.scan(root.getPath(), second).getKnownDefectResultsCount());
+        assertEquals(2, second.getClassesRead());
+        assertEquals(0, second.getClassesPrefiltered());
+        assertEquals(0, second.getClassesParsed());
+    }
+
+    @Test(expected = AnnotationScanException.class)
+    public void testFailurePropagated() throws Exception {
+        final File pkg = new File(folder.getRoot(), "pkg");
+        new TestClassWriter(folder.getRoot()).writeClass("pkg.Valid", "method", Constants.KNOWN_DEFECT_ANNOTATION_CLASS, null);
+        final FileOutputStream out = new FileOutputStream(new File(pkg, "Broken.class"));
+        try {
+            out.write(new byte[] {(byte) 0xCA, (byte) 0xFE, (byte) 0xBA, (byte) 0xBE, 0, 0});
+        } finally {
+            out.close();
+        }
+        AnnotationScanner.findAnnotationsInPath(folder.getRoot().getPath(), 4);
+    }
+}
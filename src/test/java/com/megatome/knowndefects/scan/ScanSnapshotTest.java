@@ -0,0 +1,133 @@
+package com.megatome.knowndefects.scan;
+
+import com.megatome.knowndefects.info.AnnotationInformation;
+import com.megatome.knowndefects.info.KnownAcceptedDefectInformation;
+import com.megatome.knowndefects.info.KnownDefectInformation;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.List;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertTrue;
+import static junit.framework.Assert.fail;
+
+public class ScanSnapshotTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testExactRoundTrip() throws Exception {
+        final AnnotationScanResults results = new AnnotationScanResults();
+        final KnownAcceptedDefectInformation kadInfo = new KnownAcceptedDefectInformation();
+        kadInfo.setClassName("com.example.BTest");
+        kadInfo.setMethodName("testAccepted");
+        kadInfo.setLineNumber(42);
+        kadInfo.setMethodValue("reason", "Known \u00e9 issue");
+        kadInfo.setMethodValue("author", null);
+        kadInfo.setMethodValue("extra", "kept");
+        results.addResult(kadInfo.getClassName(), kadInfo);
+        final AnnotationInformation kdInfo = new KnownDefectInformation();
+        kdInfo.setClassName("com.example.BTest");
+        kdInfo.setMethodName("testBroken");
+        kdInfo.setMethodValue("value", "");
+        results.addResult(kdInfo.getClassName(), kdInfo);
+        final AnnotationInformation otherInfo = new KnownDefectInformation();
+        otherInfo.setClassName("com.example.ATest");
+        otherInfo.setMethodName("testBroken");
+        results.addResult(otherInfo.getClassName(), otherInfo);
+
+        final File first = new File(folder.getRoot(), "first.snapshot");
+        ScanSnapshot.write(first, results);
+        final AnnotationScanResults read = ScanSnapshot.read(first);
+        final File second = new File(folder.getRoot(), "second.snapshot");
+        ScanSnapshot.write(second, read);
+        assertTrue(Arrays.equals(readBytes(first), readBytes(second)));
+
+        final PackageScanResults packageResults = read.getAllResults().get(0);
+        assertEquals(Arrays.asList("ATest", "BTest"), packageResults.getClassNames());
+        final AnnotationInformation readKad = packageResults.getKnownAcceptedDefectResults("BTest").getAnnotations().get(0);
+        assertEquals(42, readKad.getLineNumber());
+        assertEquals(Arrays.asList("author", "reason", "extra"), readKad.getMethodNames());
+        assertNull(readKad.getMethodValue("author"));
+        assertEquals("Known \u00e9 issue", readKad.getMethodValue("reason"));
+        assertEquals("", packageResults.getKnownDefectResults("BTest").getAnnotations().get(0).getMethodValue("value"));
+    }
+
+    @Test
+    public void testTruncatedSnapshotRejected() throws Exception {
+        final AnnotationScanResults results = new AnnotationScanResults();
+        final AnnotationInformation info = new KnownDefectInformation();
+        info.setClassName("com.example.ATest");
+        info.setMethodName("testBroken");
+        results.addResult(info.getClassName(), info);
+        final File snapshot = new File(folder.getRoot(), "truncated.snapshot");
+        ScanSnapshot.write(snapshot, results);
+        final RandomAccessFile file = new RandomAccessFile(snapshot, "rw");
+        try {
+            file.setLength(file.length() - 3);
+        } finally {
+            file.close();
+        }
+        try {
+            ScanSnapshot.read(snapshot);
+            fail("Truncated snapshot should not be read");
+        } catch (IOException e) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void testReadAll() throws Exception {
+        final List<File> snapshots = new ArrayList<File>();
+        for (int module = 0; module < 10; module++) {
+            final AnnotationScanResults results = new AnnotationScanResults();
+            for (int i = 0; i < 5; i++) {
+                final AnnotationInformation info = (i % 2 == 0) ? new KnownDefectInformation() : new KnownAcceptedDefectInformation();
+                info.setClassName("module" + module + ".Class" + i);
+                info.setMethodName("method" + i);
+                info.setLineNumber(i);
+                info.setMethodValue("value", "note " + module);
+                results.addResult(info.getClassName(), info);
+            }
+            // Every module also contributes to a shared package
+            final AnnotationInformation shared = new KnownDefectInformation();
+            shared.setClassName("shared.Fixture");
+            shared.setMethodName("method" + module);
+            results.addResult(shared.getClassName(), shared);
+
+            final File snapshot = new File(folder.getRoot(), "module" + module + "/scan.snapshot");
+            ScanSnapshot.write(snapshot, results);
+            snapshots.add(snapshot);
+        }
+
+        final AnnotationScanResults single = ScanSnapshot.read(snapshots.get(3));
+        assertEquals(4, single.getKnownDefectResultsCount());
+        assertEquals(2, single.getKnownAcceptedDefectResultsCount());
+        assertEquals("note 3", single.getAllResults().get(0).getKnownDefectResults("Class2").getAnnotations().get(0).getMethodValue("value"));
+
+        final AnnotationScanResults merged = ScanSnapshot.readAll(snapshots, 3);
+        assertEquals(11, merged.getAllResults().size());
+        assertEquals(31, merged.getKnownDefectResultsCount());
+        assertEquals(20, merged.getKnownAcceptedDefectResultsCount());
+        assertEquals(10, merged.getAllResults().get(10).getKnownDefectResults("Fixture").getAnnotations().size());
+    }
+
+    private static byte[] readBytes(final File file) throws IOException {
+        final RandomAccessFile in = new RandomAccessFile(file, "r");
+        try {
+            final byte[] bytes = new byte[(int) in.length()];
+            in.readFully(bytes);
+            return bytes;
+        } finally {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.megatome.knowndefects.scan;
+
+import javassist.bytecode.AnnotationsAttribute;
+import javassist.bytecode.ClassFile;
+import javassist.bytecode.ConstPool;
+import javassist.bytecode.MethodInfo;
+import javassist.bytecode.annotation.Annotation;
+import javassist.bytecode.annotation.StringMemberValue;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Writes synthetic class files with annotated methods for scanner tests.
+ */
+class TestClassWriter {
+    private final File baseDir;
+
+    TestClassWriter(final File baseDir) {
+        this.baseDir = baseDir;
+    }
+
+    /**
+     * Write a class containing a single method.
+     * @param className Fully qualified class name
+     * @param methodName Method to create
+     * @param annotationClass Annotation to place on the method, or null for none
+     * @param members Annotation member values
+     * @return Written class file
+     * @throws Exception If the class cannot be written
+     */
+    File writeClass(final String className, final String methodName, final String annotationClass, final Map<String, String> members) throws Exception {
+        final ClassFile cf = new ClassFile(false, className, null);
+        addMethod(cf, methodName, annotationClass, members);
+        return write(cf);
+    }
+
+    void addMethod(final ClassFile cf, final String methodName, final String annotationClass, final Map<String, String> members) throws Exception {
+        final ConstPool cp = cf.getConstPool();
+        final MethodInfo method = new MethodInfo(cp, methodName, "()V");
+        if (null != annotationClass) {
+            final AnnotationsAttribute attribute = new AnnotationsAttribute(cp, AnnotationsAttribute.visibleTag);
+            final Annotation annotation = new Annotation(annotationClass, cp);
+            if (null != members) {
+                for (final Map.Entry<String, String> entry : members.entrySet()) {
+                    annotation.addMemberValue(entry.getKey(), new StringMemberValue(entry.getValue(), cp));
+                }
+            }
+            attribute.addAnnotation(annotation);
+            method.addAttribute(attribute);
+        }
+        cf.addMethod(method);
+    }
+
+    File write(final ClassFile cf) throws IOException {
+        final File classFile = new File(baseDir, cf.getName().replace('.', '/') + ".class");
+        if (!classFile.getParentFile().exists() && !classFile.getParentFile().mkdirs()) {
+            throw new IOException("Could not create " + classFile.getParentFile());
+        }
+        final DataOutputStream out = new DataOutputStream(new FileOutputStream(classFile));
+        try {
+            cf.write(out);
+        } finally {
+            out.close();
+        }
+        return classFile;
+    }
+}